@@ -0,0 +1,25 @@
+package erika.fujitsu.benchmark;
+
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+
+/**
+ * The backend of the application without the Vaadin UI: the services, the repositories and the embedded H2.
+ * The benchmarks start it as a plain (non-web) Spring Boot application, so the Vaadin auto-configuration is left out.
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration(excludeName = {
+        "com.vaadin.flow.spring.SpringBootAutoConfiguration",
+        "com.vaadin.flow.spring.VaadinScopesConfig",
+        "org.springframework.boot.devtools.autoconfigure.DevToolsDataSourceAutoConfiguration"})
+@EnableCaching
+@ComponentScan("erika.fujitsu.backend")
+@EntityScan("erika.fujitsu.backend.entity")
+@EnableJpaRepositories("erika.fujitsu.backend.repository")
+public class BenchmarkApplication {
+}
@@ -0,0 +1,68 @@
+package erika.fujitsu.benchmark;
+
+import erika.fujitsu.backend.entity.Category;
+import erika.fujitsu.backend.entity.PooledSequenceGenerator;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Fills the feedback tables of a benchmark database with plain JDBC batches; going through save() would take
+ * longer than the benchmarks. The ids are reserved from person_entry_seq in blocks, like PersonImporter does,
+ * so save() never collides with them.
+ */
+final class BenchmarkRows {
+
+    private static final int BATCH = 10_000;
+    private static final int ALLOCATION_SIZE = PooledSequenceGenerator.DEFAULT_ALLOCATION_SIZE;
+    private static final String FILLER = "The portal works well but the login page could be a lot faster. ";
+
+    private BenchmarkRows() {
+    }
+
+    /**
+     * Insert the entries number first to first + count - 1.
+     *
+     * @param jdbcTemplate the database to fill
+     * @param first        the number of the first entry, it goes into the name, email and text
+     * @param count        the number of entries to insert
+     * @param textLength   the length of the filler text after "Feedback n" (a few words repeated, so that the
+     *                     full-text index stays small), 0 for none
+     */
+    static void insert(JdbcTemplate jdbcTemplate, int first, int count, int textLength) {
+        StringBuilder filler = new StringBuilder(textLength + FILLER.length());
+        while (filler.length() < textLength) {
+            filler.append(FILLER);
+        }
+        filler.setLength(textLength);
+        String text = filler.length() == 0 ? "" : " " + filler;
+
+        Timestamp now = Timestamp.from(Instant.now());
+        Category[] categories = Category.values();
+        List<Object[]> entries = new ArrayList<>();
+        List<Object[]> entryCategories = new ArrayList<>();
+        for (int start = first; start < first + count; start += BATCH) {
+            int size = Math.min(BATCH, first + count - start);
+            List<Long> blockStarts = jdbcTemplate.queryForList(
+                    "SELECT NEXT VALUE FOR person_entry_seq FROM SYSTEM_RANGE(1, ?)", Long.class,
+                    (size + ALLOCATION_SIZE - 1) / ALLOCATION_SIZE);
+            for (int j = 0; j < size; j++) {
+                int i = start + j;
+                long id = blockStarts.get(j / ALLOCATION_SIZE) + j % ALLOCATION_SIZE;
+                entries.add(new Object[]{id, "Person " + Integer.toHexString(i * 31), "person" + i + "@fujitsu.ee",
+                        "Feedback " + i + text, now});
+                entryCategories.add(new Object[]{id, categories[i % categories.length].name()});
+            }
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO person_entry (id, name, email, text, created_at) VALUES (?, ?, ?, ?, ?)", entries);
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO person_entry_category (person_entry_id, category) VALUES (?, ?)", entryCategories);
+            entries.clear();
+            entryCategories.clear();
+        }
+    }
+}
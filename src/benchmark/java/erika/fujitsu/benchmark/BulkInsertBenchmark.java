@@ -0,0 +1,119 @@
+package erika.fujitsu.benchmark;
+
+import erika.fujitsu.backend.entity.Category;
+import erika.fujitsu.backend.entity.PersonEntry;
+import erika.fujitsu.backend.repository.PersonRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how fast PersonEntries can be inserted with saveAll(), a transaction per chunk of 1,000, and prints how
+ * many JDBC statements that takes. The configured id allocation and JDBC batch size are compared against the old
+ * one-round-trip-per-insert setup (1 and 1). Run it with:
+ * mvn -Pbenchmark verify -Djmh.args="BulkInsertBenchmark"
+ * mvn -Pbenchmark verify -Djmh.args="BulkInsertBenchmark -p rows=10000 -p allocationSize=50 -p batchSize=100"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class BulkInsertBenchmark {
+
+    private static final int CHUNK = 1_000;
+
+    @Param("100000")
+    private int rows;
+
+    @Param({"50", "1"})
+    private int allocationSize;
+
+    @Param({"100", "1"})
+    private int batchSize;
+
+    private ConfigurableApplicationContext context;
+    private PersonRepository personRepository;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private Statistics statistics;
+
+    @Setup(Level.Trial)
+    public void startBackend() {
+        context = new SpringApplicationBuilder(BenchmarkApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_ON_EXIT=FALSE",
+                        "spring.jpa.show-sql=false",
+                        "spring.jpa.properties.hibernate.generate_statistics=true",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN")
+                // Arguments, since default properties would lose against application.properties.
+                .run("--spring.jpa.properties.feedback.id.allocation-size=" + allocationSize,
+                        "--spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize);
+        personRepository = context.getBean(PersonRepository.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Setup(Level.Iteration)
+    public void emptyTable() {
+        jdbcTemplate.update("DELETE FROM person_entry_category");
+        jdbcTemplate.update("DELETE FROM person_entry");
+        statistics.clear();
+    }
+
+    @TearDown(Level.Iteration)
+    public void printStatements() {
+        System.out.printf("%d JDBC statements%n", statistics.getPrepareStatementCount());
+    }
+
+    @TearDown(Level.Trial)
+    public void stopBackend() {
+        context.close();
+    }
+
+    @Benchmark
+    public long insert() {
+        List<PersonEntry> chunk = new ArrayList<>(CHUNK);
+        for (int i = 0; i < rows; i++) {
+            PersonEntry entry = new PersonEntry();
+            entry.setName("Person " + i);
+            entry.setEmail("person" + i + "@fujitsu.ee");
+            entry.setCategories(EnumSet.of(Category.OPEN_KM));
+            entry.setText("Feedback " + i);
+            chunk.add(entry);
+            if (chunk.size() == CHUNK || i == rows - 1) {
+                transactionTemplate.executeWithoutResult(status -> personRepository.saveAll(chunk));
+                chunk.clear();
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,138 @@
+package erika.fujitsu.benchmark;
+
+import erika.fujitsu.Application;
+import erika.fujitsu.api.FeedbackController;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how fast other services can send feedback through FeedbackController: one entry per request
+ * (POST /api/feedback) against many entries per request (POST /api/feedback/batch, as NDJSON), over real HTTP.
+ * Every benchmark thread is a client that waits for the answer before it sends its next request; the entries
+ * counter is the throughput in entries rather than requests. Run it with:
+ * mvn -Pbenchmark verify -Djmh.args="FeedbackApiBenchmark"
+ * mvn -Pbenchmark verify -Djmh.args="FeedbackApiBenchmark -t 16 -p batchSize=1,500"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 5)
+@Measurement(iterations = 4, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Threads(8)
+public class FeedbackApiBenchmark {
+
+    private static final AtomicInteger CLIENTS = new AtomicInteger();
+
+    @Param({"1", "100"})
+    private int batchSize;
+
+    private ConfigurableApplicationContext context;
+    private int port;
+    // Makes every text unique, so that no entry is refused as a duplicate.
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * One client: its own email address, and the entries it has sent.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Client {
+
+        public long entries;
+        private final String email = "client" + CLIENTS.incrementAndGet() + "@fujitsu.ee";
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            entries = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void startServer() {
+        // Keeps Vaadin from running npm and webpack when the server starts; the API does not need the frontend.
+        // Vaadin only reads it from the system properties at that point, not from the Spring properties.
+        System.setProperty("vaadin.productionMode", "true");
+        context = new SpringApplicationBuilder(Application.class)
+                .properties(
+                        "spring.jpa.show-sql=false",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN")
+                // Arguments, since default properties would lose against application.properties. Every client
+                // sends far more often than the rate limit allows a real sender.
+                .run("--server.port=0", "--feedback.rate-limit.per-minute=6000000");
+        port = ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() {
+        context.close();
+    }
+
+    @Benchmark
+    public void send(Client client) throws IOException {
+        if (batchSize == 1) {
+            post("/api/feedback", "application/json", entry(client.email), 201);
+        } else {
+            StringBuilder ndjson = new StringBuilder();
+            for (int i = 0; i < batchSize; i++) {
+                ndjson.append(entry(client.email)).append('\n');
+            }
+            post("/api/feedback/batch", FeedbackController.APPLICATION_NDJSON_VALUE, ndjson.toString(), 200);
+        }
+        client.entries += batchSize;
+    }
+
+    private String entry(String email) {
+        return "{\"name\":\"Api Client\",\"email\":\"" + email + "\",\"categories\":[\"PATIENTS_PORTAL\"],"
+                + "\"text\":\"Feedback number " + sequence.incrementAndGet() + " sent through the API\"}";
+    }
+
+    private void post(String path, String contentType, String body, int expectedStatus) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", contentType);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        int status = connection.getResponseCode();
+        // Read the whole answer, so that the connection is kept alive for the next request.
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            byte[] buffer = new byte[8192];
+            int read = 0;
+            while (in != null && read >= 0) {
+                read = in.read(buffer);
+            }
+        }
+        if (status != expectedStatus) {
+            throw new IllegalStateException(path + " answered " + status);
+        }
+    }
+}
@@ -0,0 +1,403 @@
+package erika.fujitsu.benchmark;
+
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.HasValue;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.component.textfield.EmailField;
+import com.vaadin.flow.component.textfield.TextArea;
+import com.vaadin.flow.component.textfield.TextField;
+import com.vaadin.flow.function.DeploymentConfiguration;
+import com.vaadin.flow.router.Router;
+import com.vaadin.flow.server.Command;
+import com.vaadin.flow.server.RouteRegistry;
+import com.vaadin.flow.server.VaadinService;
+import com.vaadin.flow.server.VaadinSession;
+import erika.fujitsu.backend.entity.Category;
+import erika.fujitsu.backend.service.BackendExecutor;
+import erika.fujitsu.backend.service.ExportFormat;
+import erika.fujitsu.backend.service.PersonService;
+import erika.fujitsu.frontend.feedbackform.FeedbackFormView;
+import erika.fujitsu.frontend.main.MainView;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mockito.Mockito;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+
+import java.io.BufferedWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Simulates many users working with the feedback form at the same time and reports how the server copes.
+ * Every simulated user has its own Vaadin session and UI with the real MainView and FeedbackFormView on top of
+ * the real backend, but no browser: the "requests" are what the client would trigger (open the view, scroll
+ * the grid, open, fill in and send the form), run under the session lock like a real request, followed by the
+ * collection of the changes for the response. It reports the heap retained per session, the latency
+ * percentiles per kind of request and the overall throughput.
+ * Its think times and percentiles do not fit JMH, so it is a main class of the benchmark profile; the arguments
+ * are those of the application:
+ * mvn -Pbenchmark verify -Dbenchmark.main=erika.fujitsu.benchmark.FeedbackLoadBenchmark
+ * -Djmh.args="[--load.sessions=500] [--load.seconds=60] [--load.think-ms=500] [--load.rows=100000]
+ * [--feedback.view.lazy-editor=false]"
+ */
+public class FeedbackLoadBenchmark {
+
+    private static final int GRID_WINDOW = 100;
+
+    private final int sessions;
+    private final int seconds;
+    private final int thinkMillis;
+    private final int rows;
+    private final PersonService personService;
+    private final BackendExecutor backendExecutor;
+    private final MeterRegistry meterRegistry;
+    private final boolean lazyEditor;
+
+    private FeedbackLoadBenchmark(ConfigurableApplicationContext context) {
+        Environment environment = context.getEnvironment();
+        sessions = environment.getProperty("load.sessions", Integer.class, 500);
+        seconds = environment.getProperty("load.seconds", Integer.class, 60);
+        thinkMillis = environment.getProperty("load.think-ms", Integer.class, 500);
+        rows = environment.getProperty("load.rows", Integer.class, 100_000);
+        lazyEditor = environment.getRequiredProperty("feedback.view.lazy-editor", Boolean.class);
+        personService = context.getBean(PersonService.class);
+        backendExecutor = context.getBean(BackendExecutor.class);
+        meterRegistry = context.getBean(MeterRegistry.class);
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Started from a main method, devtools would run it again in a restart class loader.
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        // Every simulated user sends feedback far more often than the rate limit allows a real one. An argument,
+        // since default properties would lose against application.properties.
+        arguments.add(0, "--feedback.rate-limit.per-minute=60000");
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(BenchmarkApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.jpa.show-sql=false",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN")
+                .run(arguments.toArray(new String[0]))) {
+            new FeedbackLoadBenchmark(context).simulateConcurrentSessions();
+        }
+    }
+
+    private void simulateConcurrentSessions() throws Exception {
+        importRows();
+        VaadinService service = mockService();
+
+        long heapBefore = usedHeapAfterGc();
+        List<SimulatedUser> users = new ArrayList<>(sessions);
+        for (int i = 0; i < sessions; i++) {
+            SimulatedUser user = new SimulatedUser(service, i);
+            user.open();
+            users.add(user);
+        }
+        long heapPerSession = (usedHeapAfterGc() - heapBefore) / sessions;
+
+        ExecutorService threads = Executors.newFixedThreadPool(sessions);
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Future<?>> running = new ArrayList<>();
+        for (SimulatedUser user : users) {
+            running.add(threads.submit(() -> {
+                start.await();
+                user.work(deadline);
+                return null;
+            }));
+        }
+        long startNanos = System.nanoTime();
+        start.countDown();
+        for (Future<?> user : running) {
+            user.get();
+        }
+        double elapsed = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+        threads.shutdown();
+
+        System.out.printf("%d sessions, %d rows, %d s, think time %d ms, lazy editor %b%n", sessions, rows, seconds,
+                thinkMillis, lazyEditor);
+        System.out.printf("Heap per session: %.1f KiB%n", heapPerSession / 1024.0);
+        System.out.printf("%-8s %8s %10s %10s %10s %10s%n", "request", "count", "p50 (ms)", "p90 (ms)", "p99 (ms)",
+                "max (ms)");
+        long total = 0;
+        for (Action action : Action.values()) {
+            List<Long> nanos = new ArrayList<>();
+            for (SimulatedUser user : users) {
+                nanos.addAll(user.latencies.get(action.ordinal()));
+            }
+            total += nanos.size();
+            report(action.name().toLowerCase(), nanos);
+        }
+        long sent = users.stream().mapToLong(user -> user.sent).sum();
+        System.out.printf("Throughput: %.0f requests/s, %.0f feedback entries saved/s%n", total / elapsed,
+                sent / elapsed);
+        users.forEach(SimulatedUser::close);
+    }
+
+    private void importRows() throws Exception {
+        Path file = Files.createTempFile("feedback-load", ".csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writer.write("name,email,categories,text\n");
+            for (int i = 0; i < rows; i++) {
+                writer.write("Person " + Integer.toHexString(i * 31) + ",person" + i + "@fujitsu.ee,Open KM,"
+                        + "Feedback " + i + "\n");
+            }
+        }
+        personService.importFile(file, ExportFormat.CSV);
+        Files.delete(file);
+    }
+
+    /**
+     * A VaadinService whose router knows every view, at some URL, for the RouterLinks of MainView.
+     */
+    private static VaadinService mockService() {
+        RouteRegistry registry = Mockito.mock(RouteRegistry.class);
+        Mockito.when(registry.getTargetUrl(Mockito.any(), Mockito.any())).thenReturn(Optional.of("view"));
+        Router router = Mockito.mock(Router.class);
+        Mockito.when(router.getRegistry()).thenReturn(registry);
+        VaadinService service = Mockito.mock(VaadinService.class);
+        Mockito.when(service.getRouter()).thenReturn(router);
+        return service;
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(200);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static void report(String request, List<Long> nanos) {
+        if (nanos.isEmpty()) {
+            return;
+        }
+        Collections.sort(nanos);
+        System.out.printf("%-8s %8d %10.2f %10.2f %10.2f %10.2f%n", request, nanos.size(),
+                percentile(nanos, 0.50), percentile(nanos, 0.90), percentile(nanos, 0.99),
+                nanos.get(nanos.size() - 1) / 1_000_000.0);
+    }
+
+    private static double percentile(List<Long> sortedNanos, double percentile) {
+        return sortedNanos.get((int) Math.min(sortedNanos.size() - 1, sortedNanos.size() * percentile))
+                / 1_000_000.0;
+    }
+
+    /**
+     * What a simulated user does between two think times.
+     */
+    private enum Action {
+        OPEN,
+        SCROLL,
+        SEND
+    }
+
+    /**
+     * One user: a session, a UI with the feedback form on it, and the latencies of its requests.
+     */
+    private final class SimulatedUser {
+
+        private final LoadSession session;
+        private final UI ui = new UI();
+        private final int number;
+        private final Random random;
+        private final List<List<Long>> latencies = new ArrayList<>();
+        private long sent;
+
+        private FeedbackFormView view;
+        private Grid<?> grid;
+        private TextField name;
+        private EmailField email;
+        private Component categories;
+        private TextArea text;
+        private Button send;
+
+        private SimulatedUser(VaadinService service, int number) {
+            session = new LoadSession(service);
+            this.number = number;
+            random = new Random(number);
+            for (int i = 0; i < Action.values().length; i++) {
+                latencies.add(new ArrayList<>());
+            }
+        }
+
+        /**
+         * The first request: create the views like the router does and show the first rows of the grid.
+         */
+        private void open() {
+            request(Action.OPEN, () -> {
+                ui.getInternals().setSession(session);
+                MainView mainView = new MainView(personService, backendExecutor);
+                view = new FeedbackFormView(personService, backendExecutor, meterRegistry, lazyEditor);
+                mainView.showRouterLayoutContent(view);
+                ui.add(mainView);
+
+                grid = find(view, Grid.class, component -> true);
+                grid.getDataCommunicator().setRequestedRange(0, GRID_WINDOW);
+            });
+        }
+
+        /**
+         * Find the fields of the feedback form, clicking "Write feedback" first if the form is created lazily.
+         */
+        private void openEditor() {
+            if (lazyEditor) {
+                find(view, Button.class, button -> "Write feedback".equals(button.getText())).click();
+            }
+            name = find(view, TextField.class, field -> "Name".equals(field.getLabel()));
+            email = find(view, EmailField.class, field -> true);
+            text = find(view, TextArea.class, field -> true);
+            send = find(view, Button.class, button -> "Send".equals(button.getText()));
+            categories = find(view, Component.class,
+                    component -> component.getElement().getTag().equals("multiselect-combo-box"));
+        }
+
+        /**
+         * Keep sending requests, with a random think time in between, until the deadline.
+         */
+        private void work(long deadline) throws InterruptedException {
+            while (System.nanoTime() < deadline) {
+                Thread.sleep(thinkMillis == 0 ? 0 : random.nextInt(2 * thinkMillis));
+                if (random.nextInt(5) == 0) {
+                    sendFeedback();
+                } else {
+                    request(Action.SCROLL, () -> grid.getDataCommunicator()
+                            .setRequestedRange(random.nextInt(rows), GRID_WINDOW));
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void sendFeedback() {
+            CompletableFuture<Void> acknowledged = new CompletableFuture<>();
+            request(Action.SEND, () -> {
+                if (send == null) {
+                    openEditor();
+                }
+                name.setValue("Load User" + random.nextInt(1000));
+                email.setValue("load" + random.nextInt(1000) + "@fujitsu.ee");
+                ((HasValue<?, Set<Category>>) categories).setValue(EnumSet.of(Category.VIRTUAL_VISIT));
+                // Unique, or the backend would refuse it as a duplicate.
+                text.setValue("Feedback " + (sent + 1) + " sent by load user " + number);
+                send.click();
+                // The form is re-enabled once the backend has saved the entry.
+                session.whenAccessed(() -> {
+                    if (send.isEnabled()) {
+                        acknowledged.complete(null);
+                    }
+                });
+            });
+            acknowledged.join();
+            sent++;
+        }
+
+        /**
+         * Run one simulated request the way VaadinService would: under the session lock, then collect the
+         * changes for the response.
+         */
+        private void request(Action action, Command command) {
+            long start = System.nanoTime();
+            session.lock();
+            VaadinService.setCurrent(session.getService());
+            UI.setCurrent(ui);
+            VaadinSession.setCurrent(session);
+            try {
+                command.execute();
+                respond();
+            } finally {
+                UI.setCurrent(null);
+                VaadinSession.setCurrent(null);
+                VaadinService.setCurrent(null);
+                session.unlock();
+            }
+            latencies.get(action.ordinal()).add(System.nanoTime() - start);
+        }
+
+        private void respond() {
+            ui.getInternals().getStateTree().runExecutionsBeforeClientResponse();
+            ui.getInternals().getStateTree().collectChanges(change -> {
+            });
+            ui.getInternals().dumpPendingJavaScriptInvocations();
+        }
+
+        private void close() {
+            session.lock();
+            try {
+                ui.removeAll();
+            } finally {
+                session.unlock();
+            }
+        }
+    }
+
+    private static <T extends Component> T find(Component root, Class<T> type, Predicate<T> condition) {
+        Optional<T> found = descendants(root).filter(type::isInstance).map(type::cast).filter(condition).findFirst();
+        return found.orElseThrow(() -> new IllegalStateException("No " + type.getSimpleName() + " in the view"));
+    }
+
+    private static Stream<Component> descendants(Component component) {
+        return Stream.concat(Stream.of(component), component.getChildren().flatMap(FeedbackLoadBenchmark::descendants));
+    }
+
+    /**
+     * A Vaadin session without a servlet container. UI.access() runs the command right away under the session
+     * lock, which is what VaadinService does as soon as the lock is free, and then runs the callbacks registered
+     * with whenAccessed(), standing in for the push that would tell the browser.
+     */
+    private static final class LoadSession extends VaadinSession {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final List<Runnable> accessListeners = new ArrayList<>();
+
+        private LoadSession(VaadinService service) {
+            super(service);
+            setConfiguration(Mockito.mock(DeploymentConfiguration.class));
+        }
+
+        @Override
+        public Lock getLockInstance() {
+            return lock;
+        }
+
+        @Override
+        public Future<Void> access(Command command) {
+            lock();
+            try {
+                command.execute();
+                new ArrayList<>(accessListeners).forEach(Runnable::run);
+            } finally {
+                unlock();
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+
+        private void whenAccessed(Runnable listener) {
+            accessListeners.clear();
+            accessListeners.add(listener);
+        }
+    }
+}
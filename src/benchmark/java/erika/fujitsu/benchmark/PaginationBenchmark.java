@@ -0,0 +1,90 @@
+package erika.fujitsu.benchmark;
+
+import erika.fujitsu.backend.entity.PersonEntry;
+import erika.fujitsu.backend.repository.OffsetBasedPageRequest;
+import erika.fujitsu.backend.repository.PersonRepository;
+import erika.fujitsu.backend.repository.PersonSortKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the latency of one grid page fetched with OFFSET against the same page fetched by keyset, at a growing
+ * offset into a table of 1M rows. Run it with:
+ * mvn -Pbenchmark verify -Djmh.args="PaginationBenchmark"
+ * mvn -Pbenchmark verify -Djmh.args="PaginationBenchmark -p rows=100100 -p offset=0,10000,100000"
+ * H2's query cache is switched off, otherwise repeating the same page would only measure the cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class PaginationBenchmark {
+
+    private static final int PAGE_SIZE = 50;
+    private static final Sort BY_NAME = Sort.by("name").and(Sort.by("id"));
+
+    @Param("1000100")
+    private int rows;
+
+    @Param({"0", "10000", "100000", "1000000"})
+    private int offset;
+
+    private ConfigurableApplicationContext context;
+    private PersonRepository personRepository;
+    private PersonEntry beforePage;
+
+    @Setup(Level.Trial)
+    public void startBackend() {
+        if (offset + PAGE_SIZE > rows) {
+            throw new IllegalArgumentException("The page at offset " + offset + " is past the " + rows + " rows");
+        }
+        context = new SpringApplicationBuilder(BenchmarkApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:benchmark;QUERY_CACHE_SIZE=0;DB_CLOSE_ON_EXIT=FALSE",
+                        "spring.jpa.show-sql=false",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN")
+                .run();
+        personRepository = context.getBean(PersonRepository.class);
+        BenchmarkRows.insert(context.getBean(JdbcTemplate.class), 0, rows, 0);
+        beforePage = offset == 0 ? null
+                : personRepository.findAllBy(new OffsetBasedPageRequest(offset - 1, 1, BY_NAME)).get(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopBackend() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<PersonEntry> offsetPage() {
+        return personRepository.findAllBy(new OffsetBasedPageRequest(offset, PAGE_SIZE, BY_NAME));
+    }
+
+    @Benchmark
+    public List<PersonEntry> keysetPage() {
+        return personRepository.findPageAfter(beforePage, PersonSortKey.NAME, Sort.Direction.ASC, PAGE_SIZE);
+    }
+}
@@ -0,0 +1,140 @@
+package erika.fujitsu.benchmark;
+
+import erika.fujitsu.backend.entity.Category;
+import erika.fujitsu.backend.entity.PersonEntry;
+import erika.fujitsu.backend.entity.PersonSummary;
+import erika.fujitsu.backend.entity.PooledSequenceGenerator;
+import erika.fujitsu.backend.repository.PersonSortKey;
+import erika.fujitsu.backend.service.PersonService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JMH benchmarks of the persistence paths of PersonService against the embedded H2, at 1k, 100k and 1M rows.
+ * Every benchmark reports its throughput and, as sampled latencies, its percentiles; the benchmark profile of
+ * the pom adds the allocation rate (-prof gc). Run them with:
+ * mvn -Pbenchmark verify
+ * mvn -Pbenchmark verify -Djmh.args="PersonServiceBenchmark.count -p rows=1000 -prof gc"
+ * The count cache is switched off, so the counts measure the database and not the cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class PersonServiceBenchmark {
+
+    private static final int PAGE_SIZE = 50;
+    private static final Sort BY_NAME = Sort.by("name");
+    private static final int ALLOCATION_SIZE = PooledSequenceGenerator.DEFAULT_ALLOCATION_SIZE;
+
+    @Param({"1000", "100000", "1000000"})
+    private int rows;
+
+    private ConfigurableApplicationContext context;
+    private PersonService personService;
+    private PersonEntry middleOfTable;
+    private final AtomicLong saved = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void startBackend() {
+        context = new SpringApplicationBuilder(BenchmarkApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_ON_EXIT=FALSE",
+                        "spring.jpa.show-sql=false",
+                        "spring.cache.type=none",
+                        "spring.jpa.properties.feedback.id.allocation-size=" + ALLOCATION_SIZE,
+                        // save() is called far more often than the rate limit allows one sender.
+                        "feedback.rate-limit.per-minute=100000000",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN")
+                .run();
+        personService = context.getBean(PersonService.class);
+        BenchmarkRows.insert(context.getBean(JdbcTemplate.class), 0, rows, 0);
+        middleOfTable = personService.fetch(rows / 2, 1, BY_NAME).get(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopBackend() {
+        context.close();
+    }
+
+    @Benchmark
+    public PersonEntry save() {
+        PersonEntry entry = new PersonEntry();
+        entry.setName("Benchmark Person");
+        entry.setEmail("benchmark@fujitsu.ee");
+        entry.setCategories(EnumSet.of(Category.OPEN_KM));
+        // Unique, or it would be refused as a duplicate.
+        entry.setText("Feedback " + saved.incrementAndGet() + " from the benchmark");
+        personService.save(entry);
+        return entry;
+    }
+
+    /**
+     * Loads the whole table; at 1M rows this is the path the grid used to take and should stay visibly slow.
+     */
+    @Benchmark
+    public List<PersonEntry> findAll() {
+        return personService.findAll();
+    }
+
+    @Benchmark
+    public long count() {
+        return personService.count();
+    }
+
+    @Benchmark
+    public List<PersonEntry> firstPage() {
+        return personService.fetch(0, PAGE_SIZE, BY_NAME);
+    }
+
+    @Benchmark
+    public List<PersonSummary> firstSummaryPage() {
+        return personService.fetchSummaries(0, PAGE_SIZE, BY_NAME);
+    }
+
+    @Benchmark
+    public List<PersonEntry> randomOffsetPage() {
+        return personService.fetch(ThreadLocalRandom.current().nextInt(rows - PAGE_SIZE), PAGE_SIZE, BY_NAME);
+    }
+
+    @Benchmark
+    public List<PersonEntry> keysetPageInTheMiddle() {
+        return personService.fetchAfter(middleOfTable, PersonSortKey.NAME, Sort.Direction.ASC, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<PersonEntry> categoryPage() {
+        return personService.fetchByCategory(Category.OPEN_KM, 0, PAGE_SIZE, BY_NAME);
+    }
+
+    @Benchmark
+    public long countByCategory() {
+        return personService.countByCategory(Category.OPEN_KM);
+    }
+}
@@ -0,0 +1,123 @@
+package erika.fujitsu.benchmark;
+
+import erika.fujitsu.backend.service.PersonService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long the backend takes to start with the prod profile (file-backed H2, Flyway, schema validation)
+ * against a large database, up to the first page of the grid. Every measurement is a cold start in a new JVM.
+ * The database is filled once per size and kept in target/startup-db, so later runs start right away; the
+ * discarded warmup fork is the one that fills it. 3M entries with the default text length make a database of
+ * several GB. Run it with:
+ * mvn -Pbenchmark verify -Djmh.args="StartupBenchmark"
+ * mvn -Pbenchmark verify -Djmh.args="StartupBenchmark -p rows=10000000"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 5, warmups = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class StartupBenchmark {
+
+    private static final int PAGE_SIZE = 50;
+    private static final int FILL_CHUNK = 100_000;
+    private static final Sort BY_NAME = Sort.by("name");
+
+    @Param({"100000", "3000000"})
+    private int rows;
+
+    @Param("1000")
+    private int textLength;
+
+    private Path dataDir;
+    private ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void prepareDatabase() throws SQLException, IOException {
+        dataDir = Paths.get("target", "startup-db", rows + "x" + textLength).toAbsolutePath();
+        long stored = countRows();
+        if (stored < rows) {
+            try (ConfigurableApplicationContext filling = start()) {
+                JdbcTemplate jdbcTemplate = filling.getBean(JdbcTemplate.class);
+                for (long first = stored; first < rows; first += FILL_CHUNK) {
+                    int count = (int) Math.min(FILL_CHUNK, rows - first);
+                    BenchmarkRows.insert(jdbcTemplate, (int) first, count, textLength);
+                    System.out.printf("Filled %d of %d entries%n", first + count, rows);
+                }
+            }
+        }
+        System.out.printf("Database of %d entries: %.2f GB%n", Math.max(stored, rows),
+                Files.size(dataDir.resolve("feedback.mv.db")) / 1e9);
+    }
+
+    @TearDown(Level.Iteration)
+    public void stop() {
+        if (context != null) {
+            context.close();
+            context = null;
+        }
+    }
+
+    @Benchmark
+    public int startAndFetchFirstPage() {
+        context = start();
+        return context.getBean(PersonService.class).fetchSummaries(0, PAGE_SIZE, BY_NAME).size();
+    }
+
+    private ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(BenchmarkApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("prod")
+                .properties(
+                        "spring.jpa.show-sql=false",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN")
+                // An argument, since default properties would lose against application-prod.properties.
+                .run("--feedback.data-dir=" + dataDir);
+    }
+
+    /**
+     * Count the stored entries with plain JDBC, so that Spring is not started (and warmed up) before the
+     * measurement.
+     */
+    private long countRows() throws SQLException {
+        if (!Files.exists(dataDir.resolve("feedback.mv.db"))) {
+            return 0;
+        }
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:file:" + dataDir + "/feedback", "sa", "");
+             Statement statement = connection.createStatement();
+             ResultSet count = statement.executeQuery("SELECT COUNT(*) FROM person_entry")) {
+            count.next();
+            return count.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package erika.fujitsu;
+
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.logging.Logger;
+
+
+/**
+ * StartupConfiguration holds what the fast start of the prod profile needs (see application-prod.properties).
+ * With spring.main.lazy-initialization most beans are only created when they are first used, but the persistence
+ * layer is still set up during the start: Flyway, the schema validation and the Hibernate bootstrap take seconds,
+ * and a pod should fail its start on a broken schema rather than on its first request.
+ * It also ends the training run of the class data sharing archive (see the cds profile of the pom).
+ */
+@Configuration(proxyBeanMethods = false)
+public class StartupConfiguration {
+
+    private static final Logger LOGGER = Logger.getLogger(StartupConfiguration.class.getName());
+
+    /**
+     * Keep the entity manager factory eager; Flyway runs before it and the repositories only wrap it.
+     *
+     * @return the filter that excludes the entity manager factory from lazy initialization
+     */
+    @Bean
+    static LazyInitializationExcludeFilter eagerPersistence() {
+        return LazyInitializationExcludeFilter.forBeanTypes(EntityManagerFactory.class);
+    }
+
+    /**
+     * Stop the application as soon as it has started, e.g. for the training run that records the classes
+     * of the start into the class data sharing archive (the JVM writes it when it exits).
+     * Start with --feedback.startup.exit-after-start=true.
+     *
+     * @param context the context to close
+     * @return the runner that stops the application
+     */
+    @Bean
+    @ConditionalOnProperty("feedback.startup.exit-after-start")
+    ApplicationRunner exitAfterStart(ConfigurableApplicationContext context) {
+        return args -> {
+            LOGGER.info("Started, exiting as requested by feedback.startup.exit-after-start");
+            System.exit(SpringApplication.exit(context));
+        };
+    }
+}
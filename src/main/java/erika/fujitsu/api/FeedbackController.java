@@ -0,0 +1,188 @@
+package erika.fujitsu.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import erika.fujitsu.backend.entity.PersonEntry;
+import erika.fujitsu.backend.entity.PersonEntryRules;
+import erika.fujitsu.backend.entity.PersonSummary;
+import erika.fujitsu.backend.service.BackendExecutor;
+import erika.fujitsu.backend.service.FeedbackRejectedException;
+import erika.fujitsu.backend.service.PersonService;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+
+/**
+ * FeedbackController lets other services send feedback as JSON, next to the feedback form.
+ * POST /api/feedback takes one entry and answers once it is stored; it goes through the same write-behind queue,
+ * duplicate check and rate limit of the email address as the form (see PersonService.submit()).
+ * POST /api/feedback/batch takes many entries, as a JSON array or as NDJSON (one entry per line, the format of the
+ * export), and stores the valid ones in one transaction (see PersonService.submitAll()) in the writes bulkhead of
+ * BackendExecutor, so the request thread is free while the transaction runs; it answers with an ImportReport that
+ * lists the rejected entries by their position.
+ * Both check the entries against PersonEntryRules, like the binder of the form. Errors are answered with
+ * {"errors": [...]} and the status: 400 for invalid entries (and single entries from an email domain that may not
+ * send feedback, see PersonService.isEmailDomainAllowed()), 409 for duplicates, 413 for a batch over
+ * feedback.api.max-batch-size, 429 for a sender that sends too fast, 503 if the queue is full or the backend did not
+ * answer in time (the entries may still be stored then; sending them again is safe, duplicates are rejected).
+ */
+@RestController
+@RequestMapping(path = "/api/feedback", produces = MediaType.APPLICATION_JSON_VALUE)
+public class FeedbackController {
+
+    /**
+     * The media type of a batch with one JSON entry per line.
+     */
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    private final PersonService personService;
+    private final BackendExecutor backendExecutor;
+    private final ObjectReader requestReader;
+    private final int maxBatchSize;
+
+    /**
+     * FeedbackController constructor.
+     *
+     * @param personService   stores the entries
+     * @param backendExecutor runs the transactions of the batches
+     * @param objectMapper    reads the entries of a batch one by one
+     * @param maxBatchSize    the largest number of entries in one batch
+     */
+    public FeedbackController(PersonService personService, BackendExecutor backendExecutor, ObjectMapper objectMapper,
+                              @Value("${feedback.api.max-batch-size:1000}") int maxBatchSize) {
+        this.personService = personService;
+        this.backendExecutor = backendExecutor;
+        this.requestReader = objectMapper.readerFor(FeedbackRequest.class);
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Store one entry. The response is sent once the write-behind queue has stored it.
+     *
+     * @param request the entry
+     * @return 201 with the summary of the stored entry (with its id), or an error
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<Object>> submit(@RequestBody FeedbackRequest request) {
+        PersonEntry entry = request.toEntry();
+        List<String> violations = PersonEntryRules.violations(entry);
+        if (!violations.isEmpty()) {
+            return CompletableFuture.completedFuture(errors(HttpStatus.BAD_REQUEST, violations));
+        }
+        return personService.submit(entry).handle((saved, error) -> {
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            if (cause == null) {
+                return ResponseEntity.status(HttpStatus.CREATED).body(PersonSummary.of(saved));
+            } else if (cause instanceof FeedbackRejectedException) {
+                FeedbackRejectedException rejected = (FeedbackRejectedException) cause;
+                return error(status(rejected.getReason()), rejected.getMessage());
+            }
+            return unavailable(error, cause);
+        });
+    }
+
+    /**
+     * Store a batch of entries in one transaction. The body is read entry by entry, so a batch that is too large
+     * is refused before all of it is read.
+     *
+     * @param body a JSON array of entries, or one JSON entry per line
+     * @return 200 with the ImportReport of the batch, or an error if the body cannot be read or is too large
+     * @throws IOException if the body cannot be received
+     */
+    @PostMapping(path = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE})
+    public CompletableFuture<ResponseEntity<Object>> submitBatch(InputStream body) throws IOException {
+        List<PersonEntry> entries = new ArrayList<>();
+        // A root-level array is read element by element, like the lines of NDJSON.
+        try (MappingIterator<FeedbackRequest> requests = requestReader.readValues(body)) {
+            while (requests.hasNextValue()) {
+                if (entries.size() == maxBatchSize) {
+                    return CompletableFuture.completedFuture(error(HttpStatus.PAYLOAD_TOO_LARGE,
+                            "A batch can have at most " + maxBatchSize + " entries."));
+                }
+                entries.add(requests.nextValue().toEntry());
+            }
+        } catch (JsonProcessingException | RuntimeJsonMappingException unreadable) {
+            return CompletableFuture.completedFuture(
+                    error(HttpStatus.BAD_REQUEST, (entries.size() + 1) + ": " + unreadable.getMessage()));
+        }
+        return backendExecutor.writeAsync(() -> personService.submitAll(entries)).handle((report, error) -> {
+            if (error == null) {
+                return ResponseEntity.ok(report);
+            }
+            return unavailable(error, error instanceof CompletionException ? error.getCause() : error);
+        });
+    }
+
+    /**
+     * Answer a single entry that is not valid JSON, or has an unknown category, like the other invalid entries.
+     */
+    @ExceptionHandler(HttpMessageNotReadableException.class)
+    ResponseEntity<Object> unreadable(HttpMessageNotReadableException unreadable) {
+        return error(HttpStatus.BAD_REQUEST, unreadable.getMostSpecificCause().getMessage());
+    }
+
+    private static HttpStatus status(FeedbackRejectedException.Reason reason) {
+        switch (reason) {
+            case DUPLICATE:
+                return HttpStatus.CONFLICT;
+            case RATE_LIMITED:
+                return HttpStatus.TOO_MANY_REQUESTS;
+            default:
+                return HttpStatus.BAD_REQUEST;
+        }
+    }
+
+    /**
+     * Answer 503 if the backend is too busy or too slow, and fail the request with any other exception.
+     *
+     * @param error the exception the future completed with
+     * @param cause the exception itself, unwrapped from a CompletionException
+     * @return the answer
+     */
+    private static ResponseEntity<Object> unavailable(Throwable error, Throwable cause) {
+        String message;
+        if (cause instanceof RejectedExecutionException) {
+            message = cause.getMessage();
+        } else if (cause instanceof TimeoutException) {
+            message = "The feedback could not be stored in time, please try again later.";
+        } else {
+            throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+        }
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Collections.singletonMap("errors", Collections.singletonList(message)));
+    }
+
+    private static ResponseEntity<Object> error(HttpStatus status, String message) {
+        return errors(status, Collections.singletonList(message));
+    }
+
+    private static ResponseEntity<Object> errors(HttpStatus status, List<String> messages) {
+        Map<String, List<String>> body = Collections.singletonMap("errors", messages);
+        return ResponseEntity.status(status).body(body);
+    }
+}
@@ -0,0 +1,70 @@
+package erika.fujitsu.api;
+
+import erika.fujitsu.backend.entity.Category;
+import erika.fujitsu.backend.entity.PersonEntry;
+
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+
+/**
+ * FeedbackRequest is one feedback entry as another service sends it to FeedbackController:
+ * the fields of an NDJSON export record (categories by their enum name), without the id and the creation time,
+ * which the server sets. Other fields are ignored, so exported records can be sent as they are.
+ */
+public class FeedbackRequest {
+
+    private String name;
+    private String email;
+    private Set<Category> categories;
+    private String text;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public Set<Category> getCategories() {
+        return categories;
+    }
+
+    public void setCategories(Set<Category> categories) {
+        this.categories = categories;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    /**
+     * @return a new entry with the fields of the request, not checked yet
+     */
+    PersonEntry toEntry() {
+        PersonEntry entry = new PersonEntry();
+        entry.setName(name);
+        entry.setEmail(email);
+        Set<Category> entryCategories = EnumSet.noneOf(Category.class);
+        if (categories != null) {
+            categories.stream().filter(Objects::nonNull).forEach(entryCategories::add);
+        }
+        entry.setCategories(entryCategories);
+        entry.setText(text);
+        return entry;
+    }
+}
@@ -0,0 +1,79 @@
+package erika.fujitsu.backend.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * ReadWriteRoutingConfiguration splits the database work between a primary and a read replica.
+ * It is only active when feedback.datasource.replica.url is set; otherwise Spring Boot configures the usual single
+ * data source from spring.datasource.
+ * The primary is configured by spring.datasource (and spring.datasource.hikari), the replica by
+ * feedback.datasource.replica (and feedback.datasource.replica.hikari). Read-only transactions, i.e. the methods of
+ * PersonService marked with @Transactional(readOnly = true) and the reading methods of the repositories, use the
+ * replica; everything else uses the primary, including Flyway, the schema creation and the JDBC batches of the import.
+ * A replica is usually a little behind its primary, so a new entry can take a moment to show up in the grid.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "feedback.datasource.replica.url")
+public class ReadWriteRoutingConfiguration {
+
+    /**
+     * The data source everything (JPA, Flyway, JdbcTemplate) uses.
+     * The two connection pools are not beans of their own: Spring Boot would then try to initialize each of them
+     * with this data source, which is still being created. Their pool metrics are registered here instead.
+     * The proxy only takes a real connection when the first statement runs, by which time the transaction is marked
+     * read-only or not; JPA would otherwise take it at the beginning of the transaction, before the routing can tell.
+     *
+     * @param properties    the spring.datasource settings of the primary
+     * @param environment   holds the feedback.datasource.replica settings and the pool settings of both
+     * @param meterRegistry records the pool metrics, if metrics are enabled
+     * @return the routing data source
+     */
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties, Environment environment,
+                                 ObjectProvider<MeterRegistry> meterRegistry) {
+        Binder binder = Binder.get(environment);
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("feedback-primary");
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+
+        HikariDataSource replica = DataSourceBuilder.create().type(HikariDataSource.class)
+                .url(environment.getRequiredProperty("feedback.datasource.replica.url"))
+                .username(environment.getProperty("feedback.datasource.replica.username", "sa"))
+                .password(environment.getProperty("feedback.datasource.replica.password", ""))
+                .build();
+        replica.setPoolName("feedback-replica");
+        replica.setReadOnly(true);
+        binder.bind("feedback.datasource.replica.hikari", Bindable.ofInstance(replica));
+
+        meterRegistry.ifAvailable(registry -> {
+            primary.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+            replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+        });
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(ReadWriteRoutingDataSource.Route.PRIMARY, primary);
+        targets.put(ReadWriteRoutingDataSource.Route.REPLICA, replica);
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource();
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+}
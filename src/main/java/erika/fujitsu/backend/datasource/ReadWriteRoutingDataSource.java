@@ -0,0 +1,27 @@
+package erika.fujitsu.backend.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+
+/**
+ * ReadWriteRoutingDataSource sends the connections of read-only transactions to the replica
+ * and every other connection (writes, and work outside of a transaction) to the primary.
+ * The transaction has to be marked read-only before the connection is taken, which is why it is always used behind
+ * a LazyConnectionDataSourceProxy (see ReadWriteRoutingConfiguration).
+ */
+class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    /**
+     * The lookup keys of the two target data sources.
+     */
+    enum Route {
+        PRIMARY,
+        REPLICA
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? Route.REPLICA : Route.PRIMARY;
+    }
+}
@@ -1,12 +1,19 @@
 package erika.fujitsu.backend.entity;
 
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.MappedSuperclass;
 
 
 /**
  * This is an abstract class that takes care of every PersonEntry instance ID assignment.
+ * IDs come from the person_entry_seq sequence in blocks (see PooledSequenceGenerator),
+ * so saving many entries does not cost one database round trip per entry.
  *
  * @author Erika Maksimova
  */
@@ -14,14 +21,16 @@ import javax.persistence.MappedSuperclass;
 public abstract class AbstractEntity {
 
     @Id
-    @GeneratedValue
-    private Integer id;
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "person_entry_id")
+    @GenericGenerator(name = "person_entry_id", strategy = "erika.fujitsu.backend.entity.PooledSequenceGenerator",
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "person_entry_seq"))
+    private Long id;
 
-    public Integer getId() {
+    public Long getId() {
         return id;
     }
 
-    public void setId(Integer id) {
+    public void setId(Long id) {
         this.id = id;
     }
 
@@ -45,4 +54,4 @@ public abstract class AbstractEntity {
         }
         return super.equals(other);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,64 @@
+package erika.fujitsu.backend.entity;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+
+/**
+ * Category is the fixed set of applications a PersonEntry can give feedback about.
+ * The constant names are what is stored in the person_entry_category table, the labels are what users see.
+ */
+public enum Category {
+
+    PATIENTS_PORTAL("Patients portal"),
+    DOCTORS_PORTAL("Doctors portal"),
+    REGISTRATION("Registration"),
+    VIRTUAL_VISIT("Virtual visit"),
+    OPEN_KM("Open KM"),
+    MICROSOFT_SHAREPOINT("Microsoft SharePoint");
+
+    /**
+     * All categories in order, as one immutable list that every combo box can share
+     * (values() copies the array on every call).
+     */
+    public static final List<Category> ALL = Collections.unmodifiableList(Arrays.asList(values()));
+
+    private final String label;
+
+    Category(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Find the category with the given label.
+     *
+     * @param label the label as shown to users, e.g. "Open KM"
+     * @return the category, or null if no category has this label
+     */
+    public static Category fromLabel(String label) {
+        for (Category category : values()) {
+            if (category.label.equalsIgnoreCase(label.trim())) {
+                return category;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Join the labels of the given categories the way they are shown in the grid: "Patients portal, Open KM".
+     * The order is always the order of this enum, whatever the order of the collection.
+     *
+     * @param categories the categories to join
+     * @return the comma separated labels
+     */
+    public static String toLabels(Collection<Category> categories) {
+        return categories.stream().sorted().map(Category::getLabel).collect(Collectors.joining(", "));
+    }
+}
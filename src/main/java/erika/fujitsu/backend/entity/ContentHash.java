@@ -0,0 +1,75 @@
+package erika.fujitsu.backend.entity;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Locale;
+
+
+/**
+ * ContentHash identifies what a feedback entry says: the SHA-256 of its email, categories and text, as 64 hex digits.
+ * Two entries with the same content hash are duplicates, whoever's name is on them; the content_hash column has a
+ * unique index, so the database never stores the same feedback twice.
+ * The email is compared case-insensitively and the text without its leading and trailing whitespace;
+ * the categories in their declaration order.
+ */
+public final class ContentHash {
+
+    /**
+     * The number of characters of a content hash (the length of the content_hash column).
+     */
+    public static final int LENGTH = 64;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private ContentHash() {
+    }
+
+    /**
+     * @param entry the entry to hash
+     * @return the content hash of the entry
+     */
+    public static String of(PersonEntry entry) {
+        return of(entry.getEmail(), entry.getCategories(), entry.getText());
+    }
+
+    /**
+     * @param email      the email of the entry
+     * @param categories the categories of the entry
+     * @param text       the text of the entry
+     * @return the content hash of an entry with this email, categories and text
+     */
+    public static String of(String email, Collection<Category> categories, String text) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException noSha256) {
+            // Every Java platform has to support SHA-256.
+            throw new IllegalStateException(noSha256);
+        }
+        update(digest, email == null ? "" : email.trim().toLowerCase(Locale.ROOT));
+        for (Category category : Category.values()) {
+            if (categories != null && categories.contains(category)) {
+                update(digest, category.name());
+            }
+        }
+        update(digest, text == null ? "" : text.trim());
+
+        byte[] hash = digest.digest();
+        char[] hex = new char[LENGTH];
+        for (int i = 0; i < hash.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX_DIGITS[hash[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Add a value and a separator, so that moving characters from one value to the next changes the hash.
+     */
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+}
@@ -1,6 +1,23 @@
 package erika.fujitsu.backend.entity;
 
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Where;
+
+import javax.persistence.CollectionTable;
+import javax.persistence.Column;
+import javax.persistence.ElementCollection;
 import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.FetchType;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import javax.persistence.Table;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.Set;
 
 
 /**
@@ -8,16 +25,42 @@ import javax.persistence.Entity;
  * There are four fields in the form --> four variables: name, email, categories and text.
  * Each instance is stored in the PersonRepository upon creation
  * (via personService instance in theFeedbackFromView class).
+ * A deleted entry is only flagged (see PersonService.deleteAll()) until PersonPurger removes its row.
  *
  * @author Erika Maksimova
  */
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_person_entry_name_id", columnList = "name, id"),
+        @Index(name = "idx_person_entry_email_id", columnList = "email, id"),
+        @Index(name = "idx_person_entry_created_at", columnList = "created_at"),
+        @Index(name = "uk_person_entry_content_hash", columnList = "content_hash", unique = true),
+        @Index(name = "idx_person_entry_deleted_id", columnList = "deleted, id")
+})
+@Where(clause = "NOT deleted")
 public class PersonEntry extends AbstractEntity {
 
+    @Column(nullable = false)
     private String name;
+    @Column(nullable = false)
     private String email;
-    private String categories;
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "person_entry_category", joinColumns = @JoinColumn(name = "person_entry_id"),
+            indexes = @Index(name = "idx_person_entry_category", columnList = "category, person_entry_id"))
+    @Column(name = "category", nullable = false, length = 32)
+    @Enumerated(EnumType.STRING)
+    @BatchSize(size = 100)
+    private Set<Category> categories = EnumSet.noneOf(Category.class);
+    @Column(length = PersonEntryRules.MAX_TEXT_LENGTH)
     private String text;
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+    @Column(name = "content_hash", length = ContentHash.LENGTH)
+    private String contentHash;
+    // The default lets plain SQL inserts (see PersonImporter) leave the column out. Only
+    // PersonRepository.markDeleted() sets it, so a save of an entry never undoes a delete.
+    @Column(nullable = false, updatable = false, columnDefinition = "BOOLEAN DEFAULT FALSE")
+    private boolean deleted;
 
     public String getName() {
         return name;
@@ -35,12 +78,15 @@ public class PersonEntry extends AbstractEntity {
         this.email = email;
     }
 
-    public String getCategories() {
+    public Set<Category> getCategories() {
         return categories;
     }
 
-    public void setCategories(String categories) {
-        this.categories = categories;
+    public void setCategories(Set<Category> categories) {
+        this.categories.clear();
+        if (categories != null) {
+            this.categories.addAll(categories);
+        }
     }
 
     public String getText() {
@@ -50,4 +96,46 @@ public class PersonEntry extends AbstractEntity {
     public void setText(String text) {
         this.text = text;
     }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    /**
+     * Stamp the time of creation when the entry is saved for the first time (unless it was set already),
+     * and hash its content.
+     */
+    @PrePersist
+    void stampCreatedAt() {
+        if (createdAt == null) {
+            createdAt = Instant.now();
+        }
+        hashContent();
+    }
+
+    /**
+     * Hash the content again whenever a changed entry is saved.
+     * A change of the categories alone does not make the entry itself dirty; PersonService hashes the entry
+     * before every save for that reason.
+     */
+    @PreUpdate
+    void hashContent() {
+        contentHash = ContentHash.of(this);
+    }
 }
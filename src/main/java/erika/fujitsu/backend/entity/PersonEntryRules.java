@@ -0,0 +1,112 @@
+package erika.fujitsu.backend.entity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Pattern;
+
+
+/**
+ * PersonEntryRules are the rules every stored feedback entry has to follow, together with their error messages.
+ * The feedback form checks them field by field in its binder; everything else that creates entries
+ * (the bulk import, for instance) checks a whole entry with violations(), so both accept exactly the same data.
+ */
+public final class PersonEntryRules {
+
+    public static final String NAME_NOT_FULL = "Please enter your full (first and last) name!";
+    public static final String NAME_TOO_SHORT = "Your full name should be at least four letters!";
+    public static final String EMAIL_INVALID = "Please enter a valid email address!";
+    public static final String CATEGORIES_MISSING = "Please choose at least one category";
+    public static final String TEXT_MISSING = "The feedback cannot be empty";
+    public static final String TEXT_TOO_LONG = "The feedback cannot be longer than 10000 characters";
+
+    /**
+     * The longest feedback text that can be stored (the length of the text column).
+     */
+    public static final int MAX_TEXT_LENGTH = 10_000;
+
+    /**
+     * The same pattern the Vaadin EmailValidator uses.
+     */
+    private static final Pattern EMAIL = Pattern.compile("^([a-zA-Z0-9_.\\-+])+@[a-zA-Z0-9-.]+\\.[a-zA-Z0-9-]{2,}$");
+
+    private PersonEntryRules() {
+    }
+
+    /**
+     * @param name the name to check
+     * @return true if the name has at least a first and a last name
+     */
+    public static boolean isFullName(String name) {
+        return name != null && name.contains(" ");
+    }
+
+    /**
+     * @param name the name to check
+     * @return true if the name has at least five characters (four letters and the space)
+     */
+    public static boolean isLongEnoughName(String name) {
+        return name != null && name.length() >= 5;
+    }
+
+    /**
+     * @param email the email address to check
+     * @return true if the email address looks valid
+     */
+    public static boolean isEmail(String email) {
+        return email != null && EMAIL.matcher(email).matches();
+    }
+
+    /**
+     * @param categories the categories to check
+     * @return true if at least one category is chosen
+     */
+    public static boolean hasCategories(Collection<Category> categories) {
+        return categories != null && !categories.isEmpty();
+    }
+
+    /**
+     * @param text the feedback text to check
+     * @return true if some feedback is written
+     */
+    public static boolean hasText(String text) {
+        return text != null && !text.isEmpty();
+    }
+
+    /**
+     * @param text the feedback text to check
+     * @return true if the text fits into the text column (no text fits as well)
+     */
+    public static boolean isShortEnoughText(String text) {
+        return text == null || text.length() <= MAX_TEXT_LENGTH;
+    }
+
+    /**
+     * Check all the rules at once.
+     *
+     * @param entry the entry to check
+     * @return the error messages of the broken rules, empty if the entry is valid
+     */
+    public static List<String> violations(PersonEntry entry) {
+        List<String> violations = new ArrayList<>(0);
+        if (!isFullName(entry.getName())) {
+            violations.add(NAME_NOT_FULL);
+        }
+        if (!isLongEnoughName(entry.getName())) {
+            violations.add(NAME_TOO_SHORT);
+        }
+        if (!isEmail(entry.getEmail())) {
+            violations.add(EMAIL_INVALID);
+        }
+        if (!hasCategories(entry.getCategories())) {
+            violations.add(CATEGORIES_MISSING);
+        }
+        if (!hasText(entry.getText())) {
+            violations.add(TEXT_MISSING);
+        }
+        if (!isShortEnoughText(entry.getText())) {
+            violations.add(TEXT_TOO_LONG);
+        }
+        return violations;
+    }
+}
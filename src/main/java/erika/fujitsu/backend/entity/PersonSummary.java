@@ -0,0 +1,105 @@
+package erika.fujitsu.backend.entity;
+
+import java.io.Serializable;
+import java.util.EnumSet;
+import java.util.Set;
+
+
+/**
+ * PersonSummary is the read-only view of a PersonEntry that the grid shows: everything but the full text.
+ * The text is cut to the first PREVIEW_LENGTH characters by the database, so a page of summaries costs the same
+ * however long the feedback is; the full text is loaded on demand (see PersonService.findText()).
+ * The categories are not part of the select (JPQL cannot select a collection), they are added afterwards.
+ */
+public class PersonSummary implements Serializable {
+
+    /**
+     * The number of characters of the text that are loaded with the summary.
+     */
+    public static final int PREVIEW_LENGTH = 120;
+
+    private final Long id;
+    private final String name;
+    private final String email;
+    private final Set<Category> categories = EnumSet.noneOf(Category.class);
+    private final String textPreview;
+    private final boolean textTruncated;
+
+    /**
+     * PersonSummary constructor, called by the summary queries of PersonRepository.
+     *
+     * @param id          the id of the entry
+     * @param name        the name of the entry
+     * @param email       the email of the entry
+     * @param textPreview the first PREVIEW_LENGTH characters of the text, or null if there is no text
+     * @param textLength  the length of the whole text, or null if there is no text
+     */
+    public PersonSummary(Long id, String name, String email, String textPreview, Integer textLength) {
+        this.id = id;
+        this.name = name;
+        this.email = email;
+        this.textTruncated = textLength != null && textLength > PREVIEW_LENGTH;
+        this.textPreview = textTruncated ? textPreview + "\u2026" : textPreview;
+    }
+
+    /**
+     * Summarize an entry that is already in memory, e.g. the one of a PersonEvent.
+     *
+     * @param entry the entry to summarize
+     * @return the summary, with the categories of the entry
+     */
+    public static PersonSummary of(PersonEntry entry) {
+        String text = entry.getText();
+        PersonSummary summary = new PersonSummary(entry.getId(), entry.getName(), entry.getEmail(),
+                text == null ? null : text.substring(0, Math.min(text.length(), PREVIEW_LENGTH)),
+                text == null ? null : text.length());
+        summary.categories.addAll(entry.getCategories());
+        return summary;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    /**
+     * @return the categories of the entry; the summary queries leave it empty, PersonService fills it in
+     */
+    public Set<Category> getCategories() {
+        return categories;
+    }
+
+    /**
+     * @return the beginning of the text, followed by an ellipsis if the text is longer than PREVIEW_LENGTH
+     */
+    public String getTextPreview() {
+        return textPreview;
+    }
+
+    /**
+     * @return true if the text is longer than the preview
+     */
+    public boolean isTextTruncated() {
+        return textTruncated;
+    }
+
+    @Override
+    public int hashCode() {
+        return id == null ? super.hashCode() : id.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof PersonSummary)) {
+            return false;
+        }
+        return id == null ? super.equals(obj) : id.equals(((PersonSummary) obj).id);
+    }
+}
@@ -0,0 +1,40 @@
+package erika.fujitsu.backend.entity;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+
+/**
+ * PooledSequenceGenerator is a sequence id generator whose allocation size comes from the application configuration
+ * (spring.jpa.properties.feedback.id.allocation-size) instead of being fixed in an annotation.
+ * It uses the "pooled-lo" optimizer: every sequence value reserves a block of allocation-size ids,
+ * so Hibernate only asks the database for a new value once per block and inserts can be sent as one JDBC batch.
+ * The sequence value is the first id of its block, so anything that writes with plain SQL can reserve ids the same way.
+ */
+public class PooledSequenceGenerator extends SequenceStyleGenerator {
+
+    /**
+     * The Hibernate setting that holds the allocation size.
+     */
+    public static final String ALLOCATION_SIZE_SETTING = "feedback.id.allocation-size";
+
+    /**
+     * The allocation size that is used when the setting is missing.
+     */
+    public static final int DEFAULT_ALLOCATION_SIZE = 50;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        Object allocationSize = serviceRegistry.getService(ConfigurationService.class)
+                .getSettings().get(ALLOCATION_SIZE_SETTING);
+        params.setProperty(INCREMENT_PARAM,
+                allocationSize == null ? String.valueOf(DEFAULT_ALLOCATION_SIZE) : allocationSize.toString());
+        params.setProperty(OPT_PARAM, "pooled-lo");
+        super.configure(type, params, serviceRegistry);
+    }
+}
@@ -0,0 +1,65 @@
+package erika.fujitsu.backend.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * BackendTimingAspect times every call of a PersonService method and every query of the PersonRepository,
+ * so the metrics show where the time of a request goes: the service, the database or neither.
+ * The timers are tagged with the method and the class of the exception it threw ("none" if it returned):
+ * feedback.service.calls and feedback.repository.queries. Their percentiles and histogram buckets are
+ * configured in application.properties.
+ * Only calls through the Spring proxies are timed, calls from within the same class are not.
+ */
+@Aspect
+@Component
+public class BackendTimingAspect {
+
+    static final String SERVICE_TIMER = "feedback.service.calls";
+    static final String REPOSITORY_TIMER = "feedback.repository.queries";
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * BackendTimingAspect constructor.
+     *
+     * @param meterRegistry where the timers are registered
+     */
+    public BackendTimingAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(public * erika.fujitsu.backend.service.PersonService.*(..))")
+    public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(SERVICE_TIMER, joinPoint);
+    }
+
+    @Around("this(erika.fujitsu.backend.repository.PersonRepository)")
+    public Object timeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(REPOSITORY_TIMER, joinPoint);
+    }
+
+    private Object time(String timer, ProceedingJoinPoint joinPoint) throws Throwable {
+        long start = System.nanoTime();
+        String exception = "none";
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable throwable) {
+            exception = throwable.getClass().getSimpleName();
+            throw throwable;
+        } finally {
+            Timer.builder(timer)
+                    .tag("method", joinPoint.getSignature().getName())
+                    .tag("exception", exception)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
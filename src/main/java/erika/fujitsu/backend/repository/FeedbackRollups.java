@@ -0,0 +1,291 @@
+package erika.fujitsu.backend.repository;
+
+import erika.fujitsu.backend.entity.Category;
+import erika.fujitsu.backend.entity.PersonEntry;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Logger;
+
+
+/**
+ * FeedbackRollups keeps the counts of the dashboard per hour and category, and per sender, in two small tables that
+ * every write updates in its own transaction. They are counted again on start when their totals do not match
+ * person_entry. Not lazy, so that this happens on start and not on the first save.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@Lazy(false)
+public class FeedbackRollups {
+
+    private static final Logger LOGGER = Logger.getLogger(FeedbackRollups.class.getName());
+
+    /**
+     * The migration that creates the tables. Without Flyway (see application.properties) it is run from here.
+     */
+    private static final String MIGRATION = "db/migration/V3__feedback_rollups.sql";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate newTransaction;
+
+    /**
+     * FeedbackRollups constructor.
+     *
+     * @param jdbcTemplate       reads and writes the rollup tables
+     * @param transactionManager manages the transactions of a rebuild and of a new row
+     */
+    public FeedbackRollups(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Create the tables unless they are there already, and count them again if they are out of step.
+     * Comparing the totals costs a count of person_entry, which H2 knows without a scan, a count of the few entries
+     * flagged as deleted, from their index, and a sum over the senders.
+     */
+    @PostConstruct
+    public void createTables() {
+        Integer tables = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES "
+                + "WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_NAME = 'FEEDBACK_HOURLY_ROLLUP'", Integer.class);
+        if (tables == null || tables == 0) {
+            DatabasePopulatorUtils.execute(new ResourceDatabasePopulator(new ClassPathResource(MIGRATION)),
+                    jdbcTemplate.getDataSource());
+        }
+        Long stored = jdbcTemplate.queryForObject("SELECT (SELECT COUNT(*) FROM person_entry) "
+                + "- (SELECT COUNT(*) FROM person_entry WHERE deleted = TRUE)", Long.class);
+        Long counted = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(entries), 0) FROM feedback_submitter_rollup", Long.class);
+        if (stored != null && !stored.equals(counted)) {
+            LOGGER.info(String.format("The feedback rollups count %d entries instead of %d, counting them again",
+                    counted, stored));
+            rebuild();
+        }
+    }
+
+    /**
+     * Count all stored entries again, in one transaction.
+     */
+    public void rebuild() {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM feedback_hourly_rollup");
+            jdbcTemplate.update("DELETE FROM feedback_submitter_rollup");
+            jdbcTemplate.update("INSERT INTO feedback_hourly_rollup (hour, category, entries) "
+                    + "SELECT DATE_TRUNC('HOUR', e.created_at), c.category, COUNT(*) "
+                    + "FROM person_entry e JOIN person_entry_category c ON c.person_entry_id = e.id "
+                    + "WHERE e.deleted = FALSE GROUP BY DATE_TRUNC('HOUR', e.created_at), c.category");
+            jdbcTemplate.update("INSERT INTO feedback_submitter_rollup (email, entries) "
+                    + "SELECT LOWER(TRIM(email)), COUNT(*) FROM person_entry WHERE deleted = FALSE "
+                    + "GROUP BY LOWER(TRIM(email))");
+        });
+    }
+
+    /**
+     * Count new entries. Call it in the transaction that writes them, once they have their time of creation.
+     *
+     * @param entries the written entries
+     */
+    public void add(Collection<PersonEntry> entries) {
+        Deltas deltas = new Deltas();
+        entries.forEach(entry -> deltas.count(entry, 1));
+        deltas.write();
+    }
+
+    /**
+     * Stop counting entries. Call it in the transaction that deletes them, with the entries as they are stored.
+     *
+     * @param entries the deleted entries
+     */
+    public void remove(Collection<PersonEntry> entries) {
+        Deltas deltas = new Deltas();
+        entries.forEach(entry -> deltas.count(entry, -1));
+        deltas.write();
+    }
+
+    /**
+     * Stop counting an entry as it is stored, before it is changed or deleted in the same transaction.
+     * The row of the entry stays locked until the transaction ends, so two transactions that change the same entry
+     * at the same time cannot both take it off the counts.
+     *
+     * @param id the id of the entry; nothing happens if it is null, not stored or flagged as deleted
+     * @return the time of creation of the stored entry, or null if it is not stored or flagged as deleted
+     */
+    public Instant removeStored(Long id) {
+        if (id == null) {
+            return null;
+        }
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT email, created_at FROM person_entry WHERE id = ? AND deleted = FALSE FOR UPDATE", id);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        List<String> categories = jdbcTemplate.queryForList(
+                "SELECT category FROM person_entry_category WHERE person_entry_id = ?", String.class, id);
+        Timestamp createdAt = (Timestamp) rows.get(0).get("created_at");
+        Deltas deltas = new Deltas();
+        deltas.count(createdAt.toLocalDateTime(), categories, (String) rows.get(0).get("email"), -1);
+        deltas.write();
+        return createdAt.toInstant();
+    }
+
+    /**
+     * Stop counting entries as they are stored, before they are flagged as deleted in the same transaction
+     * (see removeStored(Long)). The entries are read with two queries however many there are, and their rows stay
+     * locked until the transaction ends.
+     *
+     * @param ids the ids of the entries, at most a thousand or so; the ones that are not stored or flagged as
+     *            deleted already are left out
+     */
+    public void removeStored(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        String in = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        Object[] values = ids.toArray();
+        Map<Long, Map<String, Object>> stored = new HashMap<>();
+        for (Map<String, Object> row : jdbcTemplate.queryForList("SELECT id, email, created_at FROM person_entry "
+                + "WHERE id IN (" + in + ") AND deleted = FALSE FOR UPDATE", values)) {
+            stored.put(((Number) row.get("id")).longValue(), row);
+        }
+        if (stored.isEmpty()) {
+            return;
+        }
+        Map<Long, List<String>> categories = new HashMap<>();
+        jdbcTemplate.query("SELECT person_entry_id, category FROM person_entry_category "
+                        + "WHERE person_entry_id IN (" + in + ")",
+                resultSet -> {
+                    categories.computeIfAbsent(resultSet.getLong(1), id -> new ArrayList<>())
+                            .add(resultSet.getString(2));
+                }, values);
+        Deltas deltas = new Deltas();
+        for (Map.Entry<Long, Map<String, Object>> entry : stored.entrySet()) {
+            Map<String, Object> row = entry.getValue();
+            deltas.count(((Timestamp) row.get("created_at")).toLocalDateTime(),
+                    categories.getOrDefault(entry.getKey(), Collections.emptyList()), (String) row.get("email"), -1);
+        }
+        deltas.write();
+    }
+
+    /**
+     * Read the counts of a range of hours.
+     *
+     * @param from the first hour, included
+     * @param to   the last hour, excluded
+     * @return a row per hour and category that has entries: the hour (LocalDateTime), the category (String)
+     * and the number of entries (Number)
+     */
+    public List<Object[]> countPerHourAndCategory(LocalDateTime from, LocalDateTime to) {
+        return jdbcTemplate.query("SELECT hour, category, entries FROM feedback_hourly_rollup "
+                        + "WHERE hour >= ? AND hour < ? AND entries > 0",
+                (resultSet, rowNumber) -> new Object[]{resultSet.getTimestamp(1).toLocalDateTime(),
+                        resultSet.getString(2), resultSet.getLong(3)},
+                Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+
+    /**
+     * Read the email addresses that sent the most entries.
+     *
+     * @param limit the maximum number of addresses
+     * @return a row per address, most entries first: the address (String) and the number of entries (Number)
+     */
+    public List<Object[]> findTopSubmitters(int limit) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+        return jdbcTemplate.query("SELECT email, entries FROM feedback_submitter_rollup WHERE entries > 0 "
+                        + "ORDER BY entries DESC, email LIMIT ?",
+                (resultSet, rowNumber) -> new Object[]{resultSet.getString(1), resultSet.getLong(2)}, limit);
+    }
+
+    /**
+     * The changes of one write, summed up per row of the rollup tables.
+     */
+    private final class Deltas {
+
+        private final Map<LocalDateTime, Map<String, Long>> hourly = new HashMap<>();
+        private final Map<String, Long> submitters = new HashMap<>();
+
+        private void count(PersonEntry entry, long entries) {
+            Collection<String> categories = new ArrayList<>(entry.getCategories().size());
+            for (Category category : entry.getCategories()) {
+                categories.add(category.name());
+            }
+            // The same conversion Hibernate makes when it stores created_at.
+            count(Timestamp.from(entry.getCreatedAt()).toLocalDateTime(), categories, entry.getEmail(), entries);
+        }
+
+        private void count(LocalDateTime createdAt, Collection<String> categories, String email, long entries) {
+            Map<String, Long> perCategory = hourly.computeIfAbsent(createdAt.truncatedTo(ChronoUnit.HOURS),
+                    hour -> new HashMap<>());
+            for (String category : categories) {
+                perCategory.merge(category, entries, Long::sum);
+            }
+            submitters.merge(String.valueOf(email).trim().toLowerCase(Locale.ROOT), entries, Long::sum);
+        }
+
+        private void write() {
+            for (Map.Entry<LocalDateTime, Map<String, Long>> hour : hourly.entrySet()) {
+                Timestamp timestamp = Timestamp.valueOf(hour.getKey());
+                for (Map.Entry<String, Long> category : hour.getValue().entrySet()) {
+                    update("feedback_hourly_rollup", "hour, category", "hour = ? AND category = ?",
+                            category.getValue(), timestamp, category.getKey());
+                }
+            }
+            for (Map.Entry<String, Long> submitter : submitters.entrySet()) {
+                update("feedback_submitter_rollup", "email", "email = ?", submitter.getValue(), submitter.getKey());
+            }
+        }
+
+        /**
+         * Add a change to one row. A missing row is created with no entries in a transaction of its own, which
+         * holds no other locks, so that two transactions writing the first entries of a row at the same time both
+         * add to it instead of one of them failing on the primary key. A row that is down to zero stays, the reads
+         * skip it; so a transaction never has to create a row again that it emptied itself.
+         */
+        private void update(String table, String keyColumns, String key, long entries, Object... keyValues) {
+            if (entries == 0) {
+                return;
+            }
+            Object[] entriesFirst = new Object[keyValues.length + 1];
+            entriesFirst[0] = entries;
+            System.arraycopy(keyValues, 0, entriesFirst, 1, keyValues.length);
+            String update = "UPDATE " + table + " SET entries = entries + ? WHERE " + key;
+            if (jdbcTemplate.update(update, entriesFirst) > 0) {
+                return;
+            }
+            String values = String.join(", ", Collections.nCopies(keyValues.length, "?"));
+            try {
+                newTransaction.executeWithoutResult(status -> jdbcTemplate.update(
+                        "INSERT INTO " + table + " (" + keyColumns + ", entries) VALUES (" + values + ", 0)",
+                        keyValues));
+            } catch (DuplicateKeyException createdMeanwhile) {
+                // By another transaction, which committed it.
+            }
+            jdbcTemplate.update(update, entriesFirst);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package erika.fujitsu.backend.repository;
+
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+
+/**
+ * FullTextIndex makes sure H2's built-in full-text index exists on the name, email and text of every PersonEntry.
+ * H2 keeps the index up to date by itself with triggers on the person_entry table, so every insert, update and
+ * delete (through PersonService or plain SQL) is indexed incrementally in the same transaction.
+ * The index is searched with the FT_SEARCH_DATA table function, see PersonRepository.search().
+ * Nothing depends on it, so it is never lazy: with spring.main.lazy-initialization it would never be created.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@Lazy(false)
+public class FullTextIndex {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * FullTextIndex constructor.
+     *
+     * @param jdbcTemplate runs the H2 full-text procedures
+     */
+    public FullTextIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Create the index unless it is there already. Existing entries are indexed when it is created.
+     * FT_INIT creates the FT schema and its functions; it only runs for a new database, since it also reloads
+     * the whole word list of the index, which H2 has already loaded when it opened a database file
+     * (seconds for a database of millions of entries).
+     */
+    @PostConstruct
+    public void createIndex() {
+        Integer schemas = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = 'FT' AND TABLE_NAME = 'INDEXES'",
+                Integer.class);
+        if (schemas == null || schemas == 0) {
+            jdbcTemplate.execute("CREATE ALIAS IF NOT EXISTS FT_INIT FOR \"org.h2.fulltext.FullText.init\"");
+            jdbcTemplate.execute("CALL FT_INIT()");
+        }
+        Integer indexes = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM FT.INDEXES WHERE \"SCHEMA\" = 'PUBLIC' AND \"TABLE\" = 'PERSON_ENTRY'", Integer.class);
+        if (indexes == null || indexes == 0) {
+            jdbcTemplate.execute("CALL FT_CREATE_INDEX('PUBLIC', 'PERSON_ENTRY', 'NAME,EMAIL,TEXT')");
+        }
+    }
+}
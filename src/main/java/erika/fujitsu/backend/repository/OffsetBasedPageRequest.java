@@ -0,0 +1,92 @@
+package erika.fujitsu.backend.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.io.Serializable;
+
+
+/**
+ * OffsetBasedPageRequest is a Pageable that starts at an arbitrary row instead of at a page boundary.
+ * Lazy Vaadin data providers ask for (offset, limit) windows that do not have to line up with
+ * Spring's (page, size) arithmetic, so this class translates between the two.
+ */
+public class OffsetBasedPageRequest implements Pageable, Serializable {
+
+    private final long offset;
+    private final int limit;
+    private final Sort sort;
+
+    /**
+     * OffsetBasedPageRequest constructor.
+     *
+     * @param offset index of the first row, zero-based
+     * @param limit  maximum number of rows, at least one
+     * @param sort   the order of the rows, never null
+     */
+    public OffsetBasedPageRequest(long offset, int limit, Sort sort) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must not be negative!");
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be at least one!");
+        }
+        this.offset = offset;
+        this.limit = limit;
+        this.sort = sort == null ? Sort.unsorted() : sort;
+    }
+
+    @Override
+    public int getPageNumber() {
+        return (int) (offset / limit);
+    }
+
+    @Override
+    public int getPageSize() {
+        return limit;
+    }
+
+    @Override
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public Sort getSort() {
+        return sort;
+    }
+
+    @Override
+    public Pageable next() {
+        return new OffsetBasedPageRequest(offset + limit, limit, sort);
+    }
+
+    @Override
+    public Pageable previousOrFirst() {
+        return hasPrevious() ? new OffsetBasedPageRequest(Math.max(0, offset - limit), limit, sort) : first();
+    }
+
+    @Override
+    public Pageable first() {
+        return new OffsetBasedPageRequest(0, limit, sort);
+    }
+
+    @Override
+    public boolean hasPrevious() {
+        return offset > 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * Long.hashCode(offset) + limit) + sort.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof OffsetBasedPageRequest)) {
+            return false;
+        }
+        OffsetBasedPageRequest other = (OffsetBasedPageRequest) obj;
+        return offset == other.offset && limit == other.limit && sort.equals(other.sort);
+    }
+}
@@ -1,16 +1,322 @@
 package erika.fujitsu.backend.repository;
 
+import erika.fujitsu.backend.entity.Category;
 import erika.fujitsu.backend.entity.PersonEntry;
+import erika.fujitsu.backend.entity.PersonSummary;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.QueryHint;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 
 /**
  * JpaRepository (JPA = Java Persistence API) is a Spring framework public interface for storing data.
  * it is the most optimal solution for one-page websites/applications with a local database.
+ * The JPA queries never see the entries flagged as deleted (see PersonEntry); the native queries leave them out
+ * themselves, except where noted.
  *
  * @author Erika Maksimova
  */
-public interface PersonRepository extends JpaRepository<PersonEntry, Long> {
+public interface PersonRepository extends JpaRepository<PersonEntry, Long>, PersonRepositoryCustom {
+
+    /**
+     * The select of the summary queries: the database cuts the text to the preview and measures its length.
+     */
+    String SUMMARY_SELECT = "select new erika.fujitsu.backend.entity.PersonSummary(e.id, e.name, e.email, "
+            + "substring(e.text, 1, " + PersonSummary.PREVIEW_LENGTH + "), length(e.text)) ";
+
+    /**
+     * Count the entries that are not deleted. The whole table is counted from the metadata of H2, without a scan,
+     * and only the few flagged rows are counted from their index.
+     *
+     * @return the number of entries
+     */
+    @Override
+    @Query(value = "SELECT (SELECT COUNT(*) FROM person_entry) "
+            + "- (SELECT COUNT(*) FROM person_entry WHERE deleted = TRUE)", nativeQuery = true)
+    long count();
+
+    /**
+     * Flag entries as deleted, with one statement. Their rows stay until PersonPurger removes them.
+     *
+     * @param ids the ids of the entries, at most a thousand or so
+     * @return the number of entries flagged; the ones that were flagged already or do not exist are not counted
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update PersonEntry e set e.deleted = true where e.id in :ids and e.deleted = false")
+    int markDeleted(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Find one page of entries without running the extra count query that findAll(Pageable) does.
+     *
+     * @param pageable the window and order of the entries
+     * @return the entries of the requested window
+     */
+    List<PersonEntry> findAllBy(Pageable pageable);
+
+    /**
+     * Find one page of entry summaries, without the categories and with only the beginning of the text.
+     *
+     * @param pageable the window and order of the entries
+     * @return the summaries of the requested window
+     */
+    @Query(SUMMARY_SELECT + "from PersonEntry e")
+    List<PersonSummary> findSummariesBy(Pageable pageable);
+
+    /**
+     * Find one page of the summaries of the entries that have the given category.
+     *
+     * @param category the category to filter by
+     * @param pageable the window and order of the entries
+     * @return the summaries of the requested window
+     */
+    @Query(SUMMARY_SELECT + "from PersonEntry e join e.categories c where c = :category")
+    List<PersonSummary> findSummariesByCategory(@Param("category") Category category, Pageable pageable);
+
+    /**
+     * Find the summaries of the given entries, in no particular order.
+     *
+     * @param ids the ids of the entries
+     * @return the summaries of the entries that exist
+     */
+    @Query(SUMMARY_SELECT + "from PersonEntry e where e.id in :ids")
+    List<PersonSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Find the categories of the given entries, straight from the category table.
+     *
+     * @param ids the ids of the entries
+     * @return rows of [entry id, category], one per category of every entry
+     */
+    @Query("select e.id, c from PersonEntry e join e.categories c where e.id in :ids")
+    List<Object[]> findCategoriesByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Load the full text of one entry.
+     *
+     * @param id the id of the entry
+     * @return the text, or empty if the entry does not exist or has no text
+     */
+    @Query("select e.text from PersonEntry e where e.id = :id")
+    Optional<String> findTextById(@Param("id") Long id);
+
+    /**
+     * Read all entries, ordered by id, through a database cursor that fetches 500 rows at a time.
+     * The stream must be read inside a transaction and closed afterwards; the entries stay in the persistence
+     * context until it is cleared, so callers reading the whole table should clear it every now and then.
+     *
+     * @return all entries
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READONLY, value = "true"),
+            @QueryHint(name = HINT_CACHEABLE, value = "false")})
+    @Query("select e from PersonEntry e order by e.id")
+    Stream<PersonEntry> streamAllBy();
+
+    /**
+     * Check whether an entry with the given content is stored already (see ContentHash).
+     * A deleted entry counts until it is purged: its content hash is still in the unique index.
+     * It asks the primary, in a read-write transaction: a replica may not have the entry that was just written yet.
+     *
+     * @param contentHash the content hash to look for
+     * @return true if an entry has this content hash
+     */
+    @Transactional(readOnly = false)
+    @Query(value = "SELECT COUNT(*) > 0 FROM person_entry WHERE content_hash = :contentHash", nativeQuery = true)
+    boolean existsByContentHash(@Param("contentHash") String contentHash);
+
+    /**
+     * Read the content hashes of all entries that have one, through a database cursor, the deleted ones included
+     * (see existsByContentHash()).
+     * The stream must be read inside a transaction and closed afterwards.
+     *
+     * @return the content hashes, in no particular order
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_CACHEABLE, value = "false")})
+    @Query(value = "SELECT content_hash FROM person_entry WHERE content_hash IS NOT NULL", nativeQuery = true)
+    Stream<String> streamContentHashes();
+
+    /**
+     * Find one page of the entries that have the given category.
+     *
+     * @param category the category to filter by
+     * @param pageable the window and order of the entries
+     * @return the entries of the requested window
+     */
+    @Query("select e from PersonEntry e join e.categories c where c = :category")
+    List<PersonEntry> findByCategory(@Param("category") Category category, Pageable pageable);
+
+    /**
+     * Count the entries that have the given category.
+     * Only the category index is read, the feedback table itself is not touched except for the few rows
+     * flagged as deleted, which are counted from their index and taken off.
+     *
+     * @param category the category to count
+     * @return the number of entries
+     */
+    @Query(value = "SELECT (SELECT COUNT(*) FROM person_entry_category WHERE category = :#{#category.name()}) "
+            + "- (SELECT COUNT(*) FROM person_entry e JOIN person_entry_category c ON c.person_entry_id = e.id "
+            + "AND c.category = :#{#category.name()} WHERE e.deleted = TRUE)",
+            nativeQuery = true)
+    long countByCategory(@Param("category") Category category);
+
+    /**
+     * Count the entries of every category at once, the deleted ones included; take countDeletedPerCategory() off.
+     * Only the category index is read.
+     *
+     * @return rows of [category name, number of entries]; categories without entries are missing
+     */
+    @Query(value = "SELECT category, COUNT(*) FROM person_entry_category GROUP BY category", nativeQuery = true)
+    List<Object[]> countPerCategory();
+
+    /**
+     * Count the entries flagged as deleted of every category, from the index of the flag.
+     *
+     * @return rows of [category name, number of deleted entries]; categories without deleted entries are missing
+     */
+    @Query(value = "SELECT c.category, COUNT(*) FROM person_entry e "
+            + "JOIN person_entry_category c ON c.person_entry_id = e.id WHERE e.deleted = TRUE GROUP BY c.category",
+            nativeQuery = true)
+    List<Object[]> countDeletedPerCategory();
+
+    /**
+     * Count the entries created per day since the given time.
+     *
+     * @param since the earliest time of creation to count
+     * @return rows of [day as java.sql.Date, number of entries]; days without entries are missing
+     */
+    @Query(value = "SELECT CAST(created_at AS DATE) AS day, COUNT(*) FROM person_entry "
+            + "WHERE created_at >= :since AND deleted = FALSE GROUP BY CAST(created_at AS DATE)", nativeQuery = true)
+    List<Object[]> countPerDaySince(@Param("since") Instant since);
+
+    /**
+     * Find one page of the summaries of the entries created in a time range (see findSummariesBy()).
+     * The range is read from the index on the time of creation.
+     *
+     * @param from     the earliest time of creation, included
+     * @param to       the latest time of creation, excluded
+     * @param pageable the window and order of the entries
+     * @return the summaries of the requested window
+     */
+    @Query(SUMMARY_SELECT + "from PersonEntry e where e.createdAt >= :from and e.createdAt < :to")
+    List<PersonSummary> findSummariesCreatedBetween(@Param("from") Instant from, @Param("to") Instant to,
+                                                    Pageable pageable);
+
+    /**
+     * Count the entries created in a time range.
+     *
+     * @param from the earliest time of creation, included
+     * @param to   the latest time of creation, excluded
+     * @return the number of entries
+     */
+    @Query("select count(e) from PersonEntry e where e.createdAt >= :from and e.createdAt < :to")
+    long countCreatedBetween(@Param("from") Instant from, @Param("to") Instant to);
+
+    /**
+     * Find the oldest entries created before the given time, e.g. the next ones to archive.
+     * They are ordered by the time of creation only, so the database reads them in the order of its index and
+     * stops after the page, however many entries are older.
+     *
+     * @param before   the time of creation the entries are older than
+     * @param pageable the number of entries
+     * @return the oldest entries, oldest first
+     */
+    @Query("select e from PersonEntry e where e.createdAt < :before order by e.createdAt")
+    List<PersonEntry> findOldestCreatedBefore(@Param("before") Instant before, Pageable pageable);
+
+    /**
+     * Find one page of the entries whose name, email or text contain all the words of the search text.
+     * The words are looked up in the full-text index (see FullTextIndex), not by scanning the table.
+     *
+     * @param search   the words to search for, separated by spaces
+     * @param pageable the window and order of the entries
+     * @return the entries of the requested window
+     */
+    @Query(value = "SELECT e.* FROM FT_SEARCH_DATA(:search, 0, 0) ft "
+            + "JOIN person_entry e ON e.id = ft.KEYS[1] AND e.deleted = FALSE",
+            nativeQuery = true)
+    List<PersonEntry> search(@Param("search") String search, Pageable pageable);
+
+    /**
+     * Find the ids of one page of the entries whose name, email or text contain all the words of the search text.
+     *
+     * @param search   the words to search for, separated by spaces
+     * @param pageable the window and order of the entries
+     * @return the ids of the requested window, in order
+     */
+    @Query(value = "SELECT e.id FROM FT_SEARCH_DATA(:search, 0, 0) ft "
+            + "JOIN person_entry e ON e.id = ft.KEYS[1] AND e.deleted = FALSE",
+            nativeQuery = true)
+    List<Number> searchIds(@Param("search") String search, Pageable pageable);
+
+    /**
+     * Count the entries whose name, email or text contain all the words of the search text.
+     *
+     * @param search the words to search for, separated by spaces
+     * @return the number of entries
+     */
+    @Query(value = "SELECT COUNT(*) FROM FT_SEARCH_DATA(:search, 0, 0) ft "
+            + "JOIN person_entry e ON e.id = ft.KEYS[1] AND e.deleted = FALSE", nativeQuery = true)
+    long countSearch(@Param("search") String search);
+
+    /**
+     * Find one page of the entries of one category that contain all the words of the search text.
+     *
+     * @param search   the words to search for, separated by spaces
+     * @param category the category to filter by
+     * @param pageable the window and order of the entries
+     * @return the entries of the requested window
+     */
+    @Query(value = "SELECT e.* FROM FT_SEARCH_DATA(:search, 0, 0) ft "
+            + "JOIN person_entry e ON e.id = ft.KEYS[1] AND e.deleted = FALSE "
+            + "JOIN person_entry_category c ON c.person_entry_id = e.id AND c.category = :#{#category.name()}",
+            nativeQuery = true)
+    List<PersonEntry> searchInCategory(@Param("search") String search, @Param("category") Category category,
+                                       Pageable pageable);
+
+    /**
+     * Find the ids of one page of the entries of one category that contain all the words of the search text.
+     *
+     * @param search   the words to search for, separated by spaces
+     * @param category the category to filter by
+     * @param pageable the window and order of the entries
+     * @return the ids of the requested window, in order
+     */
+    @Query(value = "SELECT e.id FROM FT_SEARCH_DATA(:search, 0, 0) ft "
+            + "JOIN person_entry e ON e.id = ft.KEYS[1] AND e.deleted = FALSE "
+            + "JOIN person_entry_category c ON c.person_entry_id = e.id AND c.category = :#{#category.name()}",
+            nativeQuery = true)
+    List<Number> searchIdsInCategory(@Param("search") String search, @Param("category") Category category,
+                                     Pageable pageable);
 
-}
\ No newline at end of file
+    /**
+     * Count the entries of one category that contain all the words of the search text.
+     *
+     * @param search   the words to search for, separated by spaces
+     * @param category the category to filter by
+     * @return the number of entries
+     */
+    @Query(value = "SELECT COUNT(*) FROM FT_SEARCH_DATA(:search, 0, 0) ft "
+            + "JOIN person_entry e ON e.id = ft.KEYS[1] AND e.deleted = FALSE "
+            + "JOIN person_entry_category c ON c.person_entry_id = e.id AND c.category = :#{#category.name()}",
+            nativeQuery = true)
+    long countSearchInCategory(@Param("search") String search, @Param("category") Category category);
+}
@@ -0,0 +1,27 @@
+package erika.fujitsu.backend.repository;
+
+import erika.fujitsu.backend.entity.PersonEntry;
+
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+
+
+/**
+ * PersonRepositoryCustom holds the PersonRepository queries that cannot be derived from method names.
+ * They are implemented in PersonRepositoryImpl, which Spring Data plugs into the repository automatically.
+ */
+public interface PersonRepositoryCustom {
+
+    /**
+     * Find the page of entries that follows the given entry in (sortKey, id) order.
+     * Unlike an OFFSET query this does not read the skipped rows, so every page costs the same.
+     *
+     * @param after     the last entry of the previous page, or null for the first page
+     * @param sortKey   the column to order by
+     * @param direction the direction of the order
+     * @param limit     maximum number of entries
+     * @return the entries following the given entry
+     */
+    List<PersonEntry> findPageAfter(PersonEntry after, PersonSortKey sortKey, Sort.Direction direction, int limit);
+}
@@ -0,0 +1,64 @@
+package erika.fujitsu.backend.repository;
+
+import erika.fujitsu.backend.entity.PersonEntry;
+
+import org.springframework.data.domain.Sort;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.List;
+
+
+/**
+ * PersonRepositoryImpl implements the custom PersonRepository queries with the JPA Criteria API.
+ */
+public class PersonRepositoryImpl implements PersonRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<PersonEntry> findPageAfter(PersonEntry after, PersonSortKey sortKey,
+                                           Sort.Direction direction, int limit) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<PersonEntry> query = builder.createQuery(PersonEntry.class);
+        Root<PersonEntry> root = query.from(PersonEntry.class);
+        Path<Long> id = root.get("id");
+        boolean ascending = direction.isAscending();
+
+        if (sortKey == PersonSortKey.ID) {
+            if (after != null) {
+                query.where(ascending ? builder.greaterThan(id, after.getId()) : builder.lessThan(id, after.getId()));
+            }
+            query.orderBy(ascending ? builder.asc(id) : builder.desc(id));
+        } else {
+            Path<String> column = root.get(sortKey.getProperty());
+            if (after != null) {
+                query.where(seek(builder, column, sortKey.valueOf(after), id, after.getId(), ascending));
+            }
+            query.orderBy(ascending ? builder.asc(column) : builder.desc(column),
+                    ascending ? builder.asc(id) : builder.desc(id));
+        }
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    /**
+     * Build "(column, id) > (value, lastId)" (or "<" when descending).
+     * It is written as "column >= value AND (column > value OR id > lastId)" because the first
+     * condition alone is a range on the (column, id) index, which the database can seek to directly.
+     */
+    private static Predicate seek(CriteriaBuilder builder, Path<String> column, String value,
+                                  Path<Long> id, Long lastId, boolean ascending) {
+        if (ascending) {
+            return builder.and(builder.greaterThanOrEqualTo(column, value),
+                    builder.or(builder.greaterThan(column, value), builder.greaterThan(id, lastId)));
+        }
+        return builder.and(builder.lessThanOrEqualTo(column, value),
+                builder.or(builder.lessThan(column, value), builder.lessThan(id, lastId)));
+    }
+}
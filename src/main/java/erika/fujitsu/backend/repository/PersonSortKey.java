@@ -0,0 +1,42 @@
+package erika.fujitsu.backend.repository;
+
+import erika.fujitsu.backend.entity.PersonEntry;
+
+import java.util.function.Function;
+
+
+/**
+ * PersonSortKey lists the PersonEntry columns that keyset (seek) pagination can order by.
+ * Every key is backed by a (column, id) index, so a page after any given row is a single index seek.
+ */
+public enum PersonSortKey {
+
+    ID("id", null),
+    NAME("name", PersonEntry::getName),
+    EMAIL("email", PersonEntry::getEmail);
+
+    private final String property;
+    private final Function<PersonEntry, String> value;
+
+    PersonSortKey(String property, Function<PersonEntry, String> value) {
+        this.property = property;
+        this.value = value;
+    }
+
+    /**
+     * @return the name of the PersonEntry property this key orders by
+     */
+    public String getProperty() {
+        return property;
+    }
+
+    /**
+     * Read the value of this key from an entry. The ID key has no value apart from the id itself.
+     *
+     * @param entry the entry to read
+     * @return the value of the sort column, or null for the ID key
+     */
+    String valueOf(PersonEntry entry) {
+        return value == null ? null : value.apply(entry);
+    }
+}
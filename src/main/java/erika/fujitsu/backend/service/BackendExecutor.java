@@ -0,0 +1,114 @@
+package erika.fujitsu.backend.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+
+/**
+ * BackendExecutor runs the calls of the views and the REST API into PersonService in bounded bulkheads (see
+ * Bulkhead) with timeouts: one for reads, one for writes and one for the checks of new feedback, so a burst of one
+ * never takes the threads of the others, and a slow query never holds a request thread longer than its timeout.
+ */
+@Component
+public class BackendExecutor {
+
+    private final Bulkhead reads;
+    private final Bulkhead writes;
+    private final Bulkhead validations;
+
+    /**
+     * BackendExecutor constructor.
+     *
+     * @param virtualThreads           true to use virtual threads when the JDK has them
+     * @param readsMaxConcurrent       reads that run at the same time
+     * @param readsQueueCapacity       reads that wait for their turn
+     * @param readsTimeout             how long a caller waits for a read
+     * @param writesMaxConcurrent      writes that run at the same time
+     * @param writesQueueCapacity      writes that wait for their turn
+     * @param writesTimeout            how long a caller waits for a write
+     * @param validationsMaxConcurrent checks of new feedback that run at the same time
+     * @param validationsQueueCapacity checks of new feedback that wait for their turn
+     * @param validationsTimeout       how long a submission waits for its checks
+     * @param meterRegistry            where the metrics of the bulkheads are registered
+     */
+    public BackendExecutor(@Value("${feedback.executor.virtual-threads:true}") boolean virtualThreads,
+                           @Value("${feedback.executor.reads.max-concurrent:6}") int readsMaxConcurrent,
+                           @Value("${feedback.executor.reads.queue-capacity:100}") int readsQueueCapacity,
+                           @Value("${feedback.executor.reads.timeout:PT5S}") Duration readsTimeout,
+                           @Value("${feedback.executor.writes.max-concurrent:2}") int writesMaxConcurrent,
+                           @Value("${feedback.executor.writes.queue-capacity:100}") int writesQueueCapacity,
+                           @Value("${feedback.executor.writes.timeout:PT30S}") Duration writesTimeout,
+                           @Value("${feedback.executor.validations.max-concurrent:2}") int validationsMaxConcurrent,
+                           @Value("${feedback.executor.validations.queue-capacity:1000}") int validationsQueueCapacity,
+                           @Value("${feedback.executor.validations.timeout:PT10S}") Duration validationsTimeout,
+                           MeterRegistry meterRegistry) {
+        this.reads = new Bulkhead("reads", readsMaxConcurrent, readsQueueCapacity, readsTimeout,
+                virtualThreads, meterRegistry);
+        this.writes = new Bulkhead("writes", writesMaxConcurrent, writesQueueCapacity, writesTimeout,
+                virtualThreads, meterRegistry);
+        this.validations = new Bulkhead("validations", validationsMaxConcurrent, validationsQueueCapacity,
+                validationsTimeout, virtualThreads, meterRegistry);
+    }
+
+    /**
+     * Read from the backend in the background.
+     *
+     * @param call the read, e.g. () -> personService.countPerCategory()
+     * @param <T>  the type of the result
+     * @return a future of the result; it fails with a RejectedExecutionException if too many reads are waiting,
+     * and with a TimeoutException if the read takes longer than feedback.executor.reads.timeout
+     */
+    public <T> CompletableFuture<T> readAsync(Supplier<T> call) {
+        return reads.submit(call);
+    }
+
+    /**
+     * Read from the backend and wait for the result, at most feedback.executor.reads.timeout.
+     *
+     * @param call the read, e.g. () -> personService.count()
+     * @param <T>  the type of the result
+     * @return the result
+     * @throws java.util.concurrent.RejectedExecutionException if too many reads are waiting
+     * @throws java.util.concurrent.CompletionException        with a TimeoutException as its cause if the read
+     *                                                         took too long
+     */
+    public <T> T read(Supplier<T> call) {
+        return reads.call(call);
+    }
+
+    /**
+     * Write to the backend in the background.
+     * A write that times out is not undone: it may still be stored after the caller stopped waiting.
+     *
+     * @param call the write, e.g. () -> personService.submitAll(entries)
+     * @param <T>  the type of the result
+     * @return a future of the result; it fails with a RejectedExecutionException if too many writes are waiting,
+     * and with a TimeoutException if the write takes longer than feedback.executor.writes.timeout
+     */
+    public <T> CompletableFuture<T> writeAsync(Supplier<T> call) {
+        return writes.submit(call);
+    }
+
+    /**
+     * @return the bulkhead of the checks of new feedback, for FeedbackValidator
+     */
+    Bulkhead validations() {
+        return validations;
+    }
+
+    /**
+     * Take no more calls when the application shuts down; the ones that are waiting still run.
+     */
+    @PreDestroy
+    void stop() {
+        reads.shutdown();
+        writes.shutdown();
+        validations.shutdown();
+    }
+}
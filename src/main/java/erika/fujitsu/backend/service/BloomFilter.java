@@ -0,0 +1,92 @@
+package erika.fujitsu.backend.service;
+
+import erika.fujitsu.backend.entity.ContentHash;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * BloomFilter remembers a set of content hashes (see ContentHash) in a fixed number of bits.
+ * mightContain() never misses a hash that was added, but answers true for a small share of the others too,
+ * so a "no" is final and a "yes" has to be checked elsewhere. Its memory does not grow with the number of hashes:
+ * once more than the expected number are added, only the share of false "yes" answers grows.
+ * It is thread-safe without locks: bits are only ever set, with compare-and-set.
+ */
+final class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bits;
+    private final int hashes;
+
+    /**
+     * BloomFilter constructor.
+     *
+     * @param expectedEntries   the number of hashes the filter is sized for
+     * @param falsePositiveRate the share of unknown hashes that mightContain() accepts at the expected size
+     */
+    BloomFilter(long expectedEntries, double falsePositiveRate) {
+        long entries = Math.max(1, expectedEntries);
+        double log2 = Math.log(2);
+        long wanted = (long) Math.ceil(-entries * Math.log(falsePositiveRate) / (log2 * log2));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE, Math.max(1, (wanted + 63) / 64));
+        this.words = new AtomicLongArray(wordCount);
+        this.bits = wordCount * 64L;
+        this.hashes = Math.max(1, (int) Math.round((double) bits / entries * log2));
+    }
+
+    /**
+     * @param contentHash the content hash to add
+     */
+    void add(String contentHash) {
+        long first = firstHalf(contentHash);
+        long second = secondHalf(contentHash);
+        for (int i = 0; i < hashes; i++) {
+            long bit = bit(first, second, i);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            if ((words.get(word) & mask) == 0) {
+                words.accumulateAndGet(word, mask, (current, set) -> current | set);
+            }
+        }
+    }
+
+    /**
+     * @param contentHash the content hash to look for
+     * @return false if the hash was never added, true if it probably was
+     */
+    boolean mightContain(String contentHash) {
+        long first = firstHalf(contentHash);
+        long second = secondHalf(contentHash);
+        for (int i = 0; i < hashes; i++) {
+            long bit = bit(first, second, i);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the size of the filter in bytes
+     */
+    long sizeInBytes() {
+        return bits / 8;
+    }
+
+    /**
+     * The i-th bit of a hash. The content hash is SHA-256 already, so two of its 64-bit parts are combined into
+     * as many independent bit positions as needed (Kirsch and Mitzenmacher) instead of hashing again.
+     */
+    private long bit(long first, long second, int i) {
+        return ((first + i * second) & Long.MAX_VALUE) % bits;
+    }
+
+    private static long firstHalf(String contentHash) {
+        return Long.parseUnsignedLong(contentHash.substring(0, 16), 16);
+    }
+
+    private static long secondHalf(String contentHash) {
+        // Odd, so that the positions of one hash never coincide.
+        return Long.parseUnsignedLong(contentHash.substring(16, ContentHash.LENGTH / 2), 16) | 1;
+    }
+}
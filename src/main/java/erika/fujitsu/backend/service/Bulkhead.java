@@ -0,0 +1,195 @@
+package erika.fujitsu.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+
+/**
+ * Bulkhead runs one kind of backend work with at most maxConcurrent calls at a time and queueCapacity calls waiting;
+ * more are rejected at once, and a call that is not done within the timeout fails with a TimeoutException.
+ */
+final class Bulkhead {
+
+    static final String QUEUED_GAUGE = "feedback.executor.queued";
+    static final String ACTIVE_GAUGE = "feedback.executor.active";
+    static final String REJECTED_COUNTER = "feedback.executor.rejected";
+    static final String TIMEOUT_COUNTER = "feedback.executor.timeouts";
+
+    private final String name;
+    private final Duration timeout;
+    private final ExecutorService executor;
+    // Permits for the running and the waiting calls, and for the running calls only.
+    private final Semaphore admission;
+    private final Semaphore running;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final Counter rejected;
+    private final Counter timeouts;
+
+    /**
+     * Bulkhead constructor.
+     *
+     * @param name           the name of the work, used for the threads and the tag of the metrics
+     * @param maxConcurrent  the largest number of calls that run at the same time
+     * @param queueCapacity  the largest number of calls that wait for their turn
+     * @param timeout        how long a caller waits for the result of a call
+     * @param virtualThreads true to run the calls on virtual threads if the JDK has them
+     * @param meterRegistry  where the metrics are registered
+     */
+    Bulkhead(String name, int maxConcurrent, int queueCapacity, Duration timeout, boolean virtualThreads,
+             MeterRegistry meterRegistry) {
+        this.name = name;
+        this.timeout = timeout;
+        this.admission = new Semaphore(maxConcurrent + queueCapacity);
+        this.running = new Semaphore(maxConcurrent);
+        ExecutorService virtual = virtualThreads ? newVirtualThreadExecutor() : null;
+        this.executor = virtual != null ? virtual : newPlatformThreadExecutor(name, maxConcurrent);
+
+        Gauge.builder(QUEUED_GAUGE, queued, AtomicInteger::get)
+                .description("Backend calls waiting for a thread")
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+        Gauge.builder(ACTIVE_GAUGE, active, AtomicInteger::get)
+                .description("Backend calls running")
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+        this.rejected = Counter.builder(REJECTED_COUNTER)
+                .description("Backend calls rejected because the queue was full")
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+        this.timeouts = Counter.builder(TIMEOUT_COUNTER)
+                .description("Backend calls whose caller stopped waiting")
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Start a call in the background.
+     *
+     * @param call the work, e.g. a call of PersonService
+     * @param <T>  the type of the result
+     * @return a future that completes with the result of the call, or exceptionally with its exception,
+     * a RejectedExecutionException if the queue is full or a TimeoutException once the timeout has passed
+     */
+    <T> CompletableFuture<T> submit(Supplier<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        if (!admission.tryAcquire()) {
+            rejected.increment();
+            result.completeExceptionally(new RejectedExecutionException(
+                    "Too many " + name + " are waiting for the backend, please try again later"));
+            return result;
+        }
+        queued.incrementAndGet();
+        try {
+            executor.execute(() -> run(call, result));
+        } catch (RejectedExecutionException shutDown) {
+            queued.decrementAndGet();
+            admission.release();
+            rejected.increment();
+            result.completeExceptionally(shutDown);
+            return result;
+        }
+        return result.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS).whenComplete((value, error) -> {
+            if (error instanceof TimeoutException) {
+                timeouts.increment();
+            }
+        });
+    }
+
+    /**
+     * Run a call in the background and wait for its result, at most for the timeout.
+     * The thread of the caller is blocked meanwhile, but never longer than the timeout, and not at all when
+     * the queue is full.
+     *
+     * @param call the work, e.g. a call of PersonService
+     * @param <T>  the type of the result
+     * @return the result of the call
+     * @throws RejectedExecutionException if the queue is full
+     * @throws CompletionException        with a TimeoutException as its cause if the call took too long
+     */
+    <T> T call(Supplier<T> call) {
+        try {
+            return submit(call).join();
+        } catch (CompletionException failure) {
+            Throwable cause = failure.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw failure;
+        }
+    }
+
+    /**
+     * Take no more calls; the ones that are waiting still run.
+     */
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    private <T> void run(Supplier<T> call, CompletableFuture<T> result) {
+        try {
+            running.acquire();
+        } catch (InterruptedException interrupted) {
+            queued.decrementAndGet();
+            admission.release();
+            result.completeExceptionally(interrupted);
+            Thread.currentThread().interrupt();
+            return;
+        }
+        queued.decrementAndGet();
+        active.incrementAndGet();
+        try {
+            // Nobody waits for a call that timed out in the queue.
+            if (!result.isDone()) {
+                result.complete(call.get());
+            }
+        } catch (Throwable failure) {
+            result.completeExceptionally(failure);
+        } finally {
+            active.decrementAndGet();
+            running.release();
+            admission.release();
+        }
+    }
+
+    /**
+     * @return an executor that starts a virtual thread per call, or null if the JDK has no virtual threads
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException notAvailable) {
+            // Before Java 21 the method is missing, or only there as a preview that is not enabled.
+            return null;
+        }
+    }
+
+    private static ExecutorService newPlatformThreadExecutor(String name, int threads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        // The semaphores bound the queue, the executor only holds the calls that are admitted.
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "feedback-" + name + "-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+}
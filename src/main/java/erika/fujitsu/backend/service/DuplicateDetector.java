@@ -0,0 +1,136 @@
+package erika.fujitsu.backend.service;
+
+import erika.fujitsu.backend.repository.PersonRepository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+
+/**
+ * DuplicateDetector tells whether feedback with the same content (see ContentHash) is stored already.
+ * A BloomFilter of the stored content hashes answers most checks without a query; the unique index of the content
+ * hash catches what slips through.
+ */
+@Component
+class DuplicateDetector implements ApplicationRunner {
+
+    private static final Logger LOGGER = Logger.getLogger(DuplicateDetector.class.getName());
+
+    private final PersonRepository personRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final BloomFilter filter;
+    private final AtomicLong databaseChecks = new AtomicLong();
+
+    private volatile boolean stopped;
+    private Thread loader;
+
+    /**
+     * DuplicateDetector constructor.
+     *
+     * @param personRepository   the repository of our feedback data
+     * @param eventBus           tells about every saved entry
+     * @param transactionManager manages the transaction that loads the stored hashes
+     * @param expectedEntries    the number of entries the filter is sized for
+     * @param falsePositiveRate  the share of new entries that are checked in the database at that size
+     */
+    DuplicateDetector(PersonRepository personRepository,
+                      PersonEventBus eventBus,
+                      PlatformTransactionManager transactionManager,
+                      @Value("${feedback.dedup.expected-entries:1000000}") long expectedEntries,
+                      @Value("${feedback.dedup.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.personRepository = personRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.filter = new BloomFilter(expectedEntries, falsePositiveRate);
+        eventBus.subscribe(event -> {
+            String contentHash = event.getEntry().getContentHash();
+            if (event.getType() != PersonEvent.Type.DELETED && contentHash != null) {
+                filter.add(contentHash);
+            }
+        });
+    }
+
+    /**
+     * @param contentHash the content hash of new feedback
+     * @return true if an entry with this content is stored already
+     */
+    boolean isDuplicate(String contentHash) {
+        if (!filter.mightContain(contentHash)) {
+            return false;
+        }
+        databaseChecks.incrementAndGet();
+        return personRepository.existsByContentHash(contentHash);
+    }
+
+    /**
+     * Remember the content of an entry that was stored without a PersonEvent.
+     *
+     * @param contentHash the content hash of the stored entry
+     */
+    void remember(String contentHash) {
+        filter.add(contentHash);
+    }
+
+    /**
+     * @return how many checks had to ask the database so far
+     */
+    long getDatabaseChecks() {
+        return databaseChecks.get();
+    }
+
+    /**
+     * Start loading the hashes of the stored entries, without holding up the start of the application.
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        loader = new Thread(this::loadStoredHashes, "feedback-dedup-load");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Stop loading the stored hashes, so that the loader is out of its transaction before the database is closed
+     * (an application can stop right after its start, e.g. in the training run of the class data sharing archive).
+     */
+    @PreDestroy
+    void stop() throws InterruptedException {
+        stopped = true;
+        if (loader != null) {
+            loader.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    private void loadStoredHashes() {
+        long start = System.nanoTime();
+        try {
+            Long loaded = readOnlyTransaction.execute(status -> {
+                long count = 0;
+                try (Stream<String> hashes = personRepository.streamContentHashes()) {
+                    Iterator<String> iterator = hashes.iterator();
+                    while (!stopped && iterator.hasNext()) {
+                        filter.add(iterator.next());
+                        count++;
+                    }
+                }
+                return count;
+            });
+            LOGGER.info(() -> String.format("Loaded %d content hashes into a %d KiB duplicate filter in %d ms",
+                    loaded, filter.sizeInBytes() / 1024, (System.nanoTime() - start) / 1_000_000));
+        } catch (RuntimeException loadException) {
+            // The unique index still rejects the duplicates, they are only found later.
+            LOGGER.log(Level.WARNING, "Could not load the stored content hashes.", loadException);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package erika.fujitsu.backend.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingException;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.InitialDirContext;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+
+/**
+ * EmailDomainCheck decides whether feedback may be sent from the domain of an email address: only the allowed
+ * domains and their subdomains, and optionally only the domains the DNS knows. The answers of the DNS are cached.
+ */
+@Component
+class EmailDomainCheck {
+
+    private static final Logger LOGGER = Logger.getLogger(EmailDomainCheck.class.getName());
+
+    private final List<String> allowedDomains;
+    private final boolean requireMailServer;
+    private final LoadingCache<String, Boolean> mailServers;
+
+    /**
+     * EmailDomainCheck constructor.
+     *
+     * @param allowedDomains    the domains that may send feedback, comma-separated; empty for all of them
+     * @param requireMailServer true to accept only the domains that are found in the DNS
+     * @param cacheSize         how many domains the answers of the DNS are kept for
+     * @param cacheTtl          how long an answer of the DNS is kept
+     */
+    EmailDomainCheck(@Value("${feedback.email.allowed-domains:}") String allowedDomains,
+                     @Value("${feedback.email.require-mail-server:false}") boolean requireMailServer,
+                     @Value("${feedback.email.cache-size:10000}") long cacheSize,
+                     @Value("${feedback.email.cache-ttl:PT1H}") Duration cacheTtl) {
+        this.allowedDomains = Arrays.stream(allowedDomains.split(","))
+                .map(domain -> domain.trim().toLowerCase(Locale.ROOT))
+                .filter(domain -> !domain.isEmpty())
+                .collect(Collectors.toList());
+        this.requireMailServer = requireMailServer;
+        this.mailServers = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTtl)
+                .build(this::hasMailServer);
+    }
+
+    /**
+     * @return true if there is anything to check, false if every domain is accepted
+     */
+    boolean isEnabled() {
+        return requireMailServer || !allowedDomains.isEmpty();
+    }
+
+    /**
+     * Check the domain of an email address. Blocks while the DNS is asked.
+     *
+     * @param email the email address
+     * @return true if feedback may be sent from the address
+     */
+    boolean isAllowed(String email) {
+        if (!isEnabled()) {
+            return true;
+        }
+        int at = email == null ? -1 : email.lastIndexOf('@');
+        if (at < 0) {
+            return false;
+        }
+        String domain = email.substring(at + 1).trim().toLowerCase(Locale.ROOT);
+        if (!allowedDomains.isEmpty()
+                && allowedDomains.stream().noneMatch(allowed -> domain.equals(allowed) || domain.endsWith("." + allowed))) {
+            return false;
+        }
+        // No answer (null) means the DNS could not be asked.
+        return !requireMailServer || !Boolean.FALSE.equals(mailServers.get(domain));
+    }
+
+    /**
+     * Ask the DNS whether a domain can receive mail. Called by the cache, once per domain and time to live.
+     *
+     * @param domain the domain, in lower case
+     * @return true if the domain has an MX or A record, false if it is unknown, null if the DNS did not answer
+     */
+    Boolean hasMailServer(String domain) {
+        Hashtable<String, String> environment = new Hashtable<>();
+        environment.put(DirContext.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.dns.DnsContextFactory");
+        environment.put("com.sun.jndi.dns.timeout.initial", "2000");
+        environment.put("com.sun.jndi.dns.timeout.retries", "1");
+        DirContext dns = null;
+        try {
+            dns = new InitialDirContext(environment);
+            Attributes records = dns.getAttributes("dns:/" + domain, new String[]{"MX", "A"});
+            return records.size() > 0;
+        } catch (NameNotFoundException unknownDomain) {
+            return false;
+        } catch (NamingException namingException) {
+            LOGGER.log(Level.FINE, "The DNS did not answer for " + domain, namingException);
+            return null;
+        } finally {
+            if (dns != null) {
+                try {
+                    dns.close();
+                } catch (NamingException ignored) {
+                    // Nothing is left open.
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package erika.fujitsu.backend.service;
+
+import java.util.Locale;
+
+
+/**
+ * The file formats all feedback can be exported in (see PersonService.export()) and imported from
+ * (see PersonService.importFile()).
+ */
+public enum ExportFormat {
+
+    /**
+     * Comma separated values with a header row, as read by spreadsheets.
+     */
+    CSV("text/csv", "csv"),
+
+    /**
+     * Newline delimited JSON: one JSON object per entry and line, as read by most analysis tools.
+     */
+    NDJSON("application/x-ndjson", "ndjson");
+
+    /**
+     * The extension that is added to the name of a gzip-compressed file.
+     */
+    static final String GZIP_EXTENSION = ".gz";
+
+    private final String contentType;
+    private final String fileExtension;
+
+    ExportFormat(String contentType, String fileExtension) {
+        this.contentType = contentType;
+        this.fileExtension = fileExtension;
+    }
+
+    /**
+     * Find the format of a file by its extension; ".jsonl" and ".json" files are read as NDJSON too.
+     * A gzip-compressed file (e.g. "feedback.ndjson.gz", like the archives of PersonArchiver) has the format of the
+     * file it compresses.
+     *
+     * @param fileName the name of the file
+     * @return the format of the file
+     * @throws IllegalArgumentException if the extension is unknown
+     */
+    public static ExportFormat fromFileName(String fileName) {
+        String lowerCase = fileName.toLowerCase(Locale.ROOT);
+        if (lowerCase.endsWith(GZIP_EXTENSION)) {
+            lowerCase = lowerCase.substring(0, lowerCase.length() - GZIP_EXTENSION.length());
+        }
+        if (lowerCase.endsWith(".csv")) {
+            return CSV;
+        }
+        if (lowerCase.endsWith(".ndjson") || lowerCase.endsWith(".jsonl") || lowerCase.endsWith(".json")) {
+            return NDJSON;
+        }
+        throw new IllegalArgumentException("Unknown file format: " + fileName);
+    }
+
+    /**
+     * @return the MIME type of the exported file
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return the extension of the exported file, without the dot
+     */
+    public String getFileExtension() {
+        return fileExtension;
+    }
+}
@@ -0,0 +1,59 @@
+package erika.fujitsu.backend.service;
+
+
+/**
+ * FeedbackRejectedException is thrown (or completes the future of PersonService.submit()) when new feedback
+ * is refused before it reaches the database: it breaks the rules of the form, its email address is not allowed to send
+ * feedback, it was sent already, or its sender is sending too fast. A change is refused if its entry was deleted.
+ * The message can be shown to the user as it is.
+ */
+public class FeedbackRejectedException extends RuntimeException {
+
+    /**
+     * Why the feedback was refused.
+     */
+    public enum Reason {
+        INVALID("Your feedback is not complete. Please fill all of the fields correctly!"),
+        EMAIL_DOMAIN("Feedback cannot be sent from this email address. Please use your work address!"),
+        DUPLICATE("This feedback has already been sent."),
+        RATE_LIMITED("You are sending feedback too fast. Please wait a moment and try again!"),
+        DELETED("This feedback has been deleted in the meantime.");
+
+        private final String message;
+
+        Reason(String message) {
+            this.message = message;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    private final Reason reason;
+
+    /**
+     * FeedbackRejectedException constructor.
+     *
+     * @param reason why the feedback was refused
+     */
+    public FeedbackRejectedException(Reason reason) {
+        super(reason.getMessage());
+        this.reason = reason;
+    }
+
+    /**
+     * FeedbackRejectedException constructor, for a rejection by the database.
+     *
+     * @param reason why the feedback was refused
+     * @param cause  the exception of the database
+     */
+    public FeedbackRejectedException(Reason reason, Throwable cause) {
+        super(reason.getMessage(), cause);
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+}
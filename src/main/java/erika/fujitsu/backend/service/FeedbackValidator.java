@@ -0,0 +1,74 @@
+package erika.fujitsu.backend.service;
+
+import erika.fujitsu.backend.entity.PersonEntry;
+import erika.fujitsu.backend.entity.PersonEntryRules;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+
+
+/**
+ * FeedbackValidator runs the checks of a new entry that may wait for the DNS or the database (the rules of the form,
+ * the email domain and the duplicate check) in the validations bulkhead of BackendExecutor, off the thread that
+ * submitted it.
+ */
+@Component
+class FeedbackValidator {
+
+    private final EmailDomainCheck emailDomains;
+    private final DuplicateDetector duplicates;
+    private final Bulkhead bulkhead;
+
+    /**
+     * FeedbackValidator constructor.
+     *
+     * @param emailDomains    checks the domain of the email address
+     * @param duplicates      tells whether the same feedback is stored already
+     * @param backendExecutor runs the checks
+     */
+    FeedbackValidator(EmailDomainCheck emailDomains, DuplicateDetector duplicates, BackendExecutor backendExecutor) {
+        this.emailDomains = emailDomains;
+        this.duplicates = duplicates;
+        this.bulkhead = backendExecutor.validations();
+    }
+
+    /**
+     * Check a new entry in the background.
+     *
+     * @param entry the entry, with its content hash
+     * @return a future that completes with the entry once it has passed all checks, or exceptionally with
+     * a FeedbackRejectedException that tells which check it failed (or a RejectedExecutionException if too many
+     * entries are waiting, a TimeoutException if the checks took too long)
+     */
+    CompletableFuture<PersonEntry> validate(PersonEntry entry) {
+        return bulkhead.submit(() -> {
+            if (!PersonEntryRules.violations(entry).isEmpty()) {
+                throw new FeedbackRejectedException(FeedbackRejectedException.Reason.INVALID);
+            }
+            if (!emailDomains.isAllowed(entry.getEmail())) {
+                throw new FeedbackRejectedException(FeedbackRejectedException.Reason.EMAIL_DOMAIN);
+            }
+            if (duplicates.isDuplicate(entry.getContentHash())) {
+                throw new FeedbackRejectedException(FeedbackRejectedException.Reason.DUPLICATE);
+            }
+            return entry;
+        });
+    }
+
+    /**
+     * Check only the domain of an email address in the background, e.g. while the user is still filling in the form.
+     * Without allowed domains or a DNS lookup (see EmailDomainCheck) the answer is there right away.
+     *
+     * @param email the email address
+     * @return a future that completes with true if feedback may be sent from the address
+     */
+    CompletableFuture<Boolean> isEmailDomainAllowed(String email) {
+        if (!emailDomains.isEnabled()) {
+            return CompletableFuture.completedFuture(true);
+        }
+        // Without an answer in time the address counts as allowed: the submission checks it again anyway.
+        return bulkhead.submit(() -> emailDomains.isAllowed(email))
+                .handle((allowed, error) -> error != null || allowed);
+    }
+}
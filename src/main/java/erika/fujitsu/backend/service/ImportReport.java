@@ -0,0 +1,61 @@
+package erika.fujitsu.backend.service;
+
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * ImportReport tells how a bulk import (see PersonService.importFile()) went.
+ * Only the first rejections are kept with their reason, the rest are only counted.
+ */
+public class ImportReport {
+
+    private final long imported;
+    private final long rejected;
+    private final long elapsedMillis;
+    private final List<String> rejections;
+
+    /**
+     * ImportReport constructor.
+     *
+     * @param imported      number of stored entries
+     * @param rejected      number of records that were not stored
+     * @param elapsedMillis how long the import took
+     * @param rejections    the first rejected records, each as "record number: reason"
+     */
+    public ImportReport(long imported, long rejected, long elapsedMillis, List<String> rejections) {
+        this.imported = imported;
+        this.rejected = rejected;
+        this.elapsedMillis = elapsedMillis;
+        this.rejections = Collections.unmodifiableList(rejections);
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public List<String> getRejections() {
+        return rejections;
+    }
+
+    /**
+     * @return the number of stored entries per second
+     */
+    public double getRowsPerSecond() {
+        return elapsedMillis == 0 ? imported : imported * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Imported %d entries in %d ms (%.0f rows/s), rejected %d records",
+                imported, elapsedMillis, getRowsPerSecond(), rejected);
+    }
+}
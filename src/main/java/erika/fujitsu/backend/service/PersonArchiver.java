@@ -0,0 +1,154 @@
+package erika.fujitsu.backend.service;
+
+import erika.fujitsu.backend.entity.PersonEntry;
+import erika.fujitsu.backend.repository.FeedbackRollups;
+import erika.fujitsu.backend.repository.PersonRepository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+
+/**
+ * PersonArchiver moves old feedback into gzip-compressed NDJSON files that can be imported again, a chunk per
+ * transaction; a chunk is only deleted once it is on the disk, so a failure loses nothing.
+ */
+@Component
+class PersonArchiver {
+
+    private static final Logger LOGGER = Logger.getLogger(PersonArchiver.class.getName());
+    private static final DateTimeFormatter FILE_TIME =
+            DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    private final PersonRepository personRepository;
+    private final PersonExporter exporter;
+    private final FeedbackRollups rollups;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Path archiveDir;
+    private final int chunkSize;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * PersonArchiver constructor.
+     *
+     * @param personRepository   finds the entries to archive
+     * @param exporter           writes the entries of a chunk
+     * @param rollups            stops counting the archived entries for the dashboard
+     * @param jdbcTemplate       deletes the archived entries
+     * @param transactionManager manages the transaction of every chunk
+     * @param archiveDir         the directory of the archive files
+     * @param chunkSize          number of entries archived in one transaction
+     */
+    PersonArchiver(PersonRepository personRepository,
+                   PersonExporter exporter,
+                   FeedbackRollups rollups,
+                   JdbcTemplate jdbcTemplate,
+                   PlatformTransactionManager transactionManager,
+                   @Value("${feedback.retention.archive-dir:./data/archive}") String archiveDir,
+                   @Value("${feedback.retention.chunk-size:1000}") int chunkSize) {
+        this.personRepository = personRepository;
+        this.exporter = exporter;
+        this.rollups = rollups;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.archiveDir = Paths.get(archiveDir);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Archive and delete all entries created before the given time.
+     *
+     * @param before the time of creation the archived entries are older than
+     * @return the number of archived entries
+     * @throws IOException if the archive cannot be written; the chunks archived until then stay archived
+     */
+    long archive(Instant before) throws IOException {
+        long start = System.nanoTime();
+        Path file = archiveDir.resolve("feedback-" + FILE_TIME.format(Instant.now()) + "."
+                + ExportFormat.NDJSON.getFileExtension() + ExportFormat.GZIP_EXTENSION);
+        long archived = 0;
+        int chunk;
+        do {
+            chunk = archiveChunk(before, file);
+            archived += chunk;
+        } while (chunk == chunkSize);
+        if (archived > 0) {
+            LOGGER.info(String.format("Archived %d entries created before %s into %s in %d ms",
+                    archived, before, file, (System.nanoTime() - start) / 1_000_000));
+        }
+        return archived;
+    }
+
+    /**
+     * Archive and delete the oldest entries, at most chunk-size of them, in one transaction.
+     *
+     * @return the number of archived entries
+     */
+    private int archiveChunk(Instant before, Path file) throws IOException {
+        try {
+            Integer archived = transactionTemplate.execute(status -> {
+                List<PersonEntry> entries = personRepository.findOldestCreatedBefore(before,
+                        PageRequest.of(0, chunkSize));
+                if (entries.isEmpty()) {
+                    return 0;
+                }
+                try {
+                    append(entries, file);
+                } catch (IOException ioException) {
+                    throw new UncheckedIOException(ioException);
+                }
+                List<Object[]> ids = new ArrayList<>(entries.size());
+                entries.forEach(entry -> ids.add(new Object[]{entry.getId()}));
+                rollups.remove(entries);
+                // The entries are deleted behind the back of the entity manager, which must not keep them.
+                entityManager.clear();
+                jdbcTemplate.batchUpdate("DELETE FROM person_entry_category WHERE person_entry_id = ?", ids);
+                jdbcTemplate.batchUpdate("DELETE FROM person_entry WHERE id = ?", ids);
+                return entries.size();
+            });
+            return archived == null ? 0 : archived;
+        } catch (UncheckedIOException uncheckedIOException) {
+            throw uncheckedIOException.getCause();
+        }
+    }
+
+    /**
+     * Append the entries to the archive file as one gzip member, and make sure they are on the disk.
+     */
+    private void append(List<PersonEntry> entries, Path file) throws IOException {
+        Files.createDirectories(archiveDir);
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+             GZIPOutputStream gzip = new GZIPOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            exporter.writeNdjson(entries, gzip);
+            gzip.finish();
+            gzip.flush();
+            channel.force(false);
+        }
+    }
+}
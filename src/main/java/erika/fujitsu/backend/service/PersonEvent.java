@@ -0,0 +1,42 @@
+package erika.fujitsu.backend.service;
+
+import erika.fujitsu.backend.entity.PersonEntry;
+
+
+/**
+ * PersonEvent tells the listeners of PersonService that stored feedback has changed.
+ * Events are published after the change has been committed.
+ */
+public class PersonEvent {
+
+    /**
+     * What happened to the entry.
+     */
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private final Type type;
+    private final PersonEntry entry;
+
+    /**
+     * PersonEvent constructor.
+     *
+     * @param type  what happened to the entry
+     * @param entry the entry as it was saved (or as it was before it was deleted)
+     */
+    public PersonEvent(Type type, PersonEntry entry) {
+        this.type = type;
+        this.entry = entry;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public PersonEntry getEntry() {
+        return entry;
+    }
+}
@@ -0,0 +1,50 @@
+package erika.fujitsu.backend.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * PersonEventBus delivers PersonEvents to every open view (or anything else) that has subscribed.
+ * It lives in this application only: there is no broker, events are delivered on the thread that published them,
+ * so listeners must return quickly (a Vaadin view should only schedule its update with UI.access()).
+ * Use it through PersonService.subscribe().
+ */
+@Component
+class PersonEventBus {
+
+    private static final Logger LOGGER = Logger.getLogger(PersonEventBus.class.getName());
+
+    private final Set<Consumer<PersonEvent>> listeners = new CopyOnWriteArraySet<>();
+
+    /**
+     * Start delivering events to the listener.
+     *
+     * @param listener receives every published event
+     * @return an action that stops the delivery; it must be run once the listener is not needed anymore
+     */
+    Runnable subscribe(Consumer<PersonEvent> listener) {
+        listeners.add(listener);
+        return () -> listeners.remove(listener);
+    }
+
+    /**
+     * Deliver an event to every listener. A failing listener does not stop the others.
+     *
+     * @param event the event to deliver
+     */
+    void publish(PersonEvent event) {
+        for (Consumer<PersonEvent> listener : listeners) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException listenerException) {
+                LOGGER.log(Level.WARNING, "A PersonEvent listener failed.", listenerException);
+            }
+        }
+    }
+}
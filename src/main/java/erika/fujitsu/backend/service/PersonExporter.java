@@ -0,0 +1,177 @@
+package erika.fujitsu.backend.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import erika.fujitsu.backend.entity.Category;
+import erika.fujitsu.backend.entity.PersonEntry;
+import erika.fujitsu.backend.repository.PersonRepository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+
+/**
+ * PersonExporter writes all stored feedback to a stream through a database cursor, one entry at a time,
+ * so the heap used by an export does not grow with the table.
+ */
+@Component
+class PersonExporter {
+
+    private final PersonRepository personRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final int clearInterval;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * PersonExporter constructor.
+     *
+     * @param personRepository   the repository of our feedback data
+     * @param transactionManager keeps the cursor open while the entries are written
+     * @param clearInterval      after how many entries the persistence context is cleared
+     */
+    PersonExporter(PersonRepository personRepository,
+                   PlatformTransactionManager transactionManager,
+                   @Value("${feedback.export.clear-interval:500}") int clearInterval) {
+        this.personRepository = personRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.clearInterval = clearInterval;
+    }
+
+    /**
+     * Write all stored entries, ordered by id. The stream is flushed but not closed.
+     *
+     * @param format the file format to write
+     * @param out    where to write the entries to
+     * @throws IOException if writing fails; the export is then incomplete
+     */
+    void export(ExportFormat format, OutputStream out) throws IOException {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<PersonEntry> entries = personRepository.streamAllBy()) {
+                    if (format == ExportFormat.CSV) {
+                        writeCsv(entries.iterator(), out);
+                    } else {
+                        writeNdjson(entries.iterator(), out);
+                    }
+                } catch (IOException ioException) {
+                    throw new UncheckedIOException(ioException);
+                }
+            });
+        } catch (UncheckedIOException uncheckedIOException) {
+            throw uncheckedIOException.getCause();
+        }
+    }
+
+    /**
+     * Write the given entries as NDJSON, like export() does, e.g. a chunk of an archive (see PersonArchiver).
+     * The stream is flushed but not closed.
+     *
+     * @param entries the entries to write
+     * @param out     where to write the entries to
+     * @throws IOException if writing fails
+     */
+    void writeNdjson(List<PersonEntry> entries, OutputStream out) throws IOException {
+        writeNdjson(entries.iterator(), out);
+    }
+
+    private void writeCsv(Iterator<PersonEntry> entries, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write("id,name,email,categories,text,created_at\r\n");
+        // Send the header at once, so the download starts before the first rows are read.
+        writer.flush();
+        int count = 0;
+        while (entries.hasNext()) {
+            PersonEntry entry = entries.next();
+            writer.write(String.valueOf(entry.getId()));
+            writer.write(',');
+            writeCsvField(writer, entry.getName());
+            writer.write(',');
+            writeCsvField(writer, entry.getEmail());
+            writer.write(',');
+            writeCsvField(writer, Category.toLabels(entry.getCategories()));
+            writer.write(',');
+            writeCsvField(writer, entry.getText());
+            writer.write(',');
+            writeCsvField(writer, entry.getCreatedAt() == null ? null : entry.getCreatedAt().toString());
+            writer.write("\r\n");
+            clearEvery(++count);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Write one CSV field, quoted if it contains a separator, a quote or a line break (RFC 4180).
+     */
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private void writeNdjson(Iterator<PersonEntry> entries, OutputStream out) throws IOException {
+        JsonGenerator generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        int count = 0;
+        while (entries.hasNext()) {
+            PersonEntry entry = entries.next();
+            generator.writeStartObject();
+            generator.writeNumberField("id", entry.getId());
+            generator.writeStringField("name", entry.getName());
+            generator.writeStringField("email", entry.getEmail());
+            generator.writeArrayFieldStart("categories");
+            for (Category category : entry.getCategories()) {
+                generator.writeString(category.name());
+            }
+            generator.writeEndArray();
+            generator.writeStringField("text", entry.getText());
+            generator.writeStringField("createdAt",
+                    entry.getCreatedAt() == null ? null : entry.getCreatedAt().toString());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            if (count == 0) {
+                generator.flush();
+            }
+            clearEvery(++count);
+        }
+        generator.close();
+    }
+
+    /**
+     * Detach the entries written so far, so the persistence context does not hold the whole table.
+     *
+     * @param count the number of entries written so far
+     */
+    private void clearEvery(int count) {
+        if (count % clearInterval == 0) {
+            entityManager.clear();
+        }
+    }
+}
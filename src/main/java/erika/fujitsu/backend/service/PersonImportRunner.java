@@ -0,0 +1,48 @@
+package erika.fujitsu.backend.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.logging.Logger;
+
+
+/**
+ * PersonImportRunner imports a feedback file when the application starts, if one is given:
+ * java -jar fujitsu.jar --feedback.import.file=/path/to/feedback.csv
+ * The format is taken from the file extension (see ExportFormat.fromFileName()).
+ */
+@Component
+@ConditionalOnProperty("feedback.import.file")
+class PersonImportRunner implements ApplicationRunner {
+
+    private static final Logger LOGGER = Logger.getLogger(PersonImportRunner.class.getName());
+
+    private final PersonService personService;
+    private final String file;
+
+    /**
+     * PersonImportRunner constructor.
+     *
+     * @param personService imports the file
+     * @param file          the path of the file to import
+     */
+    PersonImportRunner(PersonService personService, @Value("${feedback.import.file}") String file) {
+        this.personService = personService;
+        this.file = file;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        Path path = Paths.get(file);
+        ImportReport report = personService.importFile(path, ExportFormat.fromFileName(path.toString()));
+        LOGGER.info(report.toString());
+        for (String rejection : report.getRejections()) {
+            LOGGER.warning("Rejected record " + rejection);
+        }
+    }
+}
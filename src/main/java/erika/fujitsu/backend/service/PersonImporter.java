@@ -0,0 +1,476 @@
+package erika.fujitsu.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import erika.fujitsu.backend.entity.Category;
+import erika.fujitsu.backend.entity.ContentHash;
+import erika.fujitsu.backend.entity.PersonEntry;
+import erika.fujitsu.backend.entity.PersonEntryRules;
+import erika.fujitsu.backend.repository.FeedbackRollups;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+
+/**
+ * PersonImporter loads feedback from a CSV or NDJSON file (the formats PersonExporter writes), plain or gzip-compressed,
+ * parsing records in parallel and writing the valid ones in large JDBC batches, one transaction per group.
+ */
+@Component
+class PersonImporter {
+
+    private static final Logger LOGGER = Logger.getLogger(PersonImporter.class.getName());
+
+    /**
+     * How many rejections are kept with their reason in the report.
+     */
+    private static final int REPORTED_REJECTIONS = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FeedbackRollups rollups;
+    private final TransactionTemplate transactionTemplate;
+    private final DuplicateDetector duplicates;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final int chunkSize;
+    private final int parallelism;
+    private final int allocationSize;
+
+    /**
+     * PersonImporter constructor.
+     *
+     * @param jdbcTemplate       writes the entries
+     * @param rollups            counts the written entries for the dashboard
+     * @param transactionManager manages the transaction of every written group
+     * @param duplicates         tells whether the same feedback is stored already
+     * @param chunkSize          number of records parsed and written together
+     * @param parallelism        number of threads that parse records
+     * @param allocationSize     number of ids reserved by one value of person_entry_seq
+     */
+    PersonImporter(JdbcTemplate jdbcTemplate,
+                   FeedbackRollups rollups,
+                   PlatformTransactionManager transactionManager,
+                   DuplicateDetector duplicates,
+                   @Value("${feedback.import.chunk-size:5000}") int chunkSize,
+                   @Value("${feedback.import.parallelism:0}") int parallelism,
+                   @Value("${spring.jpa.properties.feedback.id.allocation-size:50}") int allocationSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.rollups = rollups;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.duplicates = duplicates;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.allocationSize = allocationSize;
+    }
+
+    /**
+     * Import all records of a file. Invalid records are skipped and reported, the valid ones are stored.
+     *
+     * @param file   the file to read
+     * @param format the format of the file
+     * @return how many records were stored and rejected, and how fast
+     * @throws IOException if the file cannot be read; the groups written until then stay stored
+     */
+    ImportReport importFile(Path file, ExportFormat format) throws IOException {
+        long start = System.nanoTime();
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService parsers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "feedback-import-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Progress progress = new Progress();
+        Deque<Future<ParsedChunk>> inFlight = new ArrayDeque<>();
+        try (BufferedReader reader = open(file)) {
+            Map<String, Integer> columns = format == ExportFormat.CSV ? readCsvHeader(reader) : null;
+            long recordNumber = 0;
+            List<String> records = new ArrayList<>(chunkSize);
+            String record;
+            while ((record = format == ExportFormat.CSV ? readCsvRecord(reader) : reader.readLine()) != null) {
+                if (record.trim().isEmpty()) {
+                    continue;
+                }
+                records.add(record);
+                if (records.size() == chunkSize) {
+                    inFlight.add(submit(parsers, records, recordNumber + 1, columns));
+                    recordNumber += records.size();
+                    records = new ArrayList<>(chunkSize);
+                    // Let the parsers run ahead of the writer, but not read the whole file into memory.
+                    if (inFlight.size() > parallelism * 2) {
+                        write(inFlight.remove(), progress);
+                    }
+                }
+            }
+            if (!records.isEmpty()) {
+                inFlight.add(submit(parsers, records, recordNumber + 1, columns));
+            }
+            while (!inFlight.isEmpty()) {
+                write(inFlight.remove(), progress);
+            }
+        } finally {
+            parsers.shutdownNow();
+        }
+        ImportReport report = new ImportReport(progress.imported, progress.rejected,
+                (System.nanoTime() - start) / 1_000_000, progress.rejections);
+        LOGGER.info(report + " from " + file);
+        return report;
+    }
+
+    /**
+     * Open a file for reading, uncompressing it if it is a gzip file (by its name, see ExportFormat.fromFileName()).
+     */
+    private static BufferedReader open(Path file) throws IOException {
+        if (!file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(ExportFormat.GZIP_EXTENSION)) {
+            return Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        }
+        // Also reads files that are several gzip members one after another, like the archives of PersonArchiver.
+        return new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(file)),
+                StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Store a batch of new entries in one transaction. The entries are checked like the records of a file:
+     * the ones that break a rule, repeat stored feedback or an earlier entry of the batch are skipped and reported
+     * by their position in the batch, starting at one.
+     *
+     * @param entries the entries to store, without ids; they get their content hash and creation time
+     * @return how many entries were stored and rejected, and how fast
+     */
+    ImportReport importEntries(List<PersonEntry> entries) {
+        long start = System.nanoTime();
+        ParsedChunk chunk = new ParsedChunk(entries.size());
+        Instant now = Instant.now();
+        for (int i = 0; i < entries.size(); i++) {
+            check(entries.get(i), i + 1, now, chunk);
+        }
+        Progress progress = new Progress();
+        write(chunk, progress);
+        ImportReport report = new ImportReport(progress.imported, progress.rejected,
+                (System.nanoTime() - start) / 1_000_000, progress.rejections);
+        LOGGER.fine(() -> report + " from a batch");
+        return report;
+    }
+
+    private Future<ParsedChunk> submit(ExecutorService parsers, List<String> records, long firstRecordNumber,
+                                       Map<String, Integer> columns) {
+        return parsers.submit(() -> parse(records, firstRecordNumber, columns));
+    }
+
+    /**
+     * Wait for a group to be parsed and write its valid entries.
+     */
+    private void write(Future<ParsedChunk> future, Progress progress) throws IOException {
+        ParsedChunk chunk;
+        try {
+            chunk = future.get();
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("The import was interrupted.");
+        } catch (ExecutionException executionException) {
+            throw new IllegalStateException("Parsing the import failed.", executionException.getCause());
+        }
+        write(chunk, progress);
+    }
+
+    /**
+     * Write the valid entries of a group that are not stored yet, in one transaction.
+     */
+    private void write(ParsedChunk chunk, Progress progress) {
+        // Only this thread writes, so a record is either stored by an earlier group or checked against this one.
+        List<PersonEntry> unique = new ArrayList<>(chunk.entries.size());
+        Set<String> hashes = new HashSet<>();
+        for (int i = 0; i < chunk.entries.size(); i++) {
+            String contentHash = chunk.entries.get(i).getContentHash();
+            if (!hashes.add(contentHash) || duplicates.isDuplicate(contentHash)) {
+                chunk.rejections.add(chunk.recordNumbers.get(i) + ": "
+                        + FeedbackRejectedException.Reason.DUPLICATE.getMessage());
+            } else {
+                unique.add(chunk.entries.get(i));
+            }
+        }
+        if (!unique.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> insert(unique));
+            unique.forEach(entry -> duplicates.remember(entry.getContentHash()));
+        }
+        progress.imported += unique.size();
+        progress.rejected += chunk.rejections.size();
+        for (String rejection : chunk.rejections) {
+            if (progress.rejections.size() == REPORTED_REJECTIONS) {
+                break;
+            }
+            progress.rejections.add(rejection);
+        }
+    }
+
+    /**
+     * Write a group of entries with one JDBC batch per table.
+     *
+     * @param entries the valid entries to write
+     */
+    private void insert(List<PersonEntry> entries) {
+        // Every value of the sequence is the first of allocationSize ids, so one query reserves all of them.
+        int blocks = (entries.size() + allocationSize - 1) / allocationSize;
+        List<Long> blockStarts = jdbcTemplate.queryForList(
+                "SELECT NEXT VALUE FOR person_entry_seq FROM SYSTEM_RANGE(1, ?)", Long.class, blocks);
+
+        List<Object[]> entryRows = new ArrayList<>(entries.size());
+        List<Object[]> categoryRows = new ArrayList<>(entries.size() * 2);
+        for (int i = 0; i < entries.size(); i++) {
+            PersonEntry entry = entries.get(i);
+            long id = blockStarts.get(i / allocationSize) + i % allocationSize;
+            entryRows.add(new Object[]{id, entry.getName(), entry.getEmail(), entry.getText(),
+                    Timestamp.from(entry.getCreatedAt()), entry.getContentHash()});
+            for (Category category : entry.getCategories()) {
+                categoryRows.add(new Object[]{id, category.name()});
+            }
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO person_entry (id, name, email, text, created_at, content_hash) VALUES (?, ?, ?, ?, ?, ?)",
+                entryRows);
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO person_entry_category (person_entry_id, category) VALUES (?, ?)", categoryRows);
+        rollups.add(entries);
+    }
+
+    /**
+     * Parse and check a group of records. Runs on the parser threads.
+     *
+     * @param records           the raw records
+     * @param firstRecordNumber the number of the first record in the file, starting at one
+     * @param columns           the index of every CSV column by name, or null for NDJSON
+     * @return the valid entries and the rejections of the group
+     */
+    private ParsedChunk parse(List<String> records, long firstRecordNumber, Map<String, Integer> columns) {
+        ParsedChunk chunk = new ParsedChunk(records.size());
+        Instant now = Instant.now();
+        for (int i = 0; i < records.size(); i++) {
+            long recordNumber = firstRecordNumber + i;
+            try {
+                check(columns != null ? parseCsv(records.get(i), columns) : parseNdjson(records.get(i)),
+                        recordNumber, now, chunk);
+            } catch (IOException | IllegalArgumentException | DateTimeParseException parseException) {
+                chunk.rejections.add(recordNumber + ": " + parseException.getMessage());
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * Add an entry to the group if it follows PersonEntryRules, or its rejection if it does not.
+     *
+     * @param entry        the parsed entry
+     * @param recordNumber the number that identifies the entry in the rejections
+     * @param now          the creation time of an entry that has none
+     * @param chunk        the group to add the entry to
+     */
+    private static void check(PersonEntry entry, long recordNumber, Instant now, ParsedChunk chunk) {
+        List<String> violations = PersonEntryRules.violations(entry);
+        if (!violations.isEmpty()) {
+            chunk.rejections.add(recordNumber + ": " + String.join(" ", violations));
+            return;
+        }
+        if (entry.getCreatedAt() == null) {
+            entry.setCreatedAt(now);
+        }
+        entry.setContentHash(ContentHash.of(entry));
+        chunk.entries.add(entry);
+        chunk.recordNumbers.add(recordNumber);
+    }
+
+    private PersonEntry parseNdjson(String record) throws IOException {
+        JsonNode json = objectMapper.readTree(record);
+        PersonEntry entry = new PersonEntry();
+        entry.setName(text(json, "name"));
+        entry.setEmail(text(json, "email"));
+        entry.setText(text(json, "text"));
+        Set<Category> categories = EnumSet.noneOf(Category.class);
+        JsonNode categoryNames = json.path("categories");
+        for (JsonNode categoryName : categoryNames) {
+            categories.add(Category.valueOf(categoryName.asText()));
+        }
+        entry.setCategories(categories);
+        String createdAt = text(json, "createdAt");
+        entry.setCreatedAt(createdAt == null ? null : Instant.parse(createdAt));
+        return entry;
+    }
+
+    private static String text(JsonNode json, String field) {
+        JsonNode value = json.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    private static PersonEntry parseCsv(String record, Map<String, Integer> columns) {
+        List<String> fields = splitCsvRecord(record);
+        PersonEntry entry = new PersonEntry();
+        entry.setName(field(fields, columns, "name"));
+        entry.setEmail(field(fields, columns, "email"));
+        entry.setText(field(fields, columns, "text"));
+        Set<Category> categories = EnumSet.noneOf(Category.class);
+        String labels = field(fields, columns, "categories");
+        if (labels != null) {
+            for (String label : labels.split(",")) {
+                Category category = Category.fromLabel(label);
+                if (category == null) {
+                    throw new IllegalArgumentException("Unknown category: " + label.trim());
+                }
+                categories.add(category);
+            }
+        }
+        entry.setCategories(categories);
+        String createdAt = field(fields, columns, "created_at");
+        entry.setCreatedAt(createdAt == null ? null : Instant.parse(createdAt));
+        return entry;
+    }
+
+    private static String field(List<String> fields, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= fields.size() || fields.get(index).isEmpty()) {
+            return null;
+        }
+        return fields.get(index);
+    }
+
+    /**
+     * Read the header row and find the columns by name, so the columns may come in any order.
+     */
+    private static Map<String, Integer> readCsvHeader(BufferedReader reader) throws IOException {
+        String header = readCsvRecord(reader);
+        if (header == null) {
+            return new HashMap<>();
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = splitCsvRecord(header);
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        for (String required : new String[]{"name", "email", "categories", "text"}) {
+            if (!columns.containsKey(required)) {
+                throw new IOException("The CSV header has no " + required + " column.");
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Read one CSV record, which ends at the first line break outside of quotes (RFC 4180).
+     * The fields are split later, on the parser threads.
+     *
+     * @return the record without its line break, or null at the end of the file
+     */
+    private static String readCsvRecord(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            return null;
+        }
+        StringBuilder record = null;
+        int quotes = countQuotes(line);
+        while (quotes % 2 != 0) {
+            String next = reader.readLine();
+            if (next == null) {
+                break;
+            }
+            if (record == null) {
+                record = new StringBuilder(line);
+            }
+            record.append('\n').append(next);
+            quotes += countQuotes(next);
+        }
+        return record == null ? line : record.toString();
+    }
+
+    private static int countQuotes(String text) {
+        int quotes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '"') {
+                quotes++;
+            }
+        }
+        return quotes;
+    }
+
+    /**
+     * Split a CSV record into its fields, removing the quotes around a field and undoubling the quotes within.
+     */
+    private static List<String> splitCsvRecord(String record) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * The result of parsing one group of records.
+     */
+    private static final class ParsedChunk {
+
+        private final List<PersonEntry> entries;
+        private final List<Long> recordNumbers;
+        private final List<String> rejections = new ArrayList<>(0);
+
+        private ParsedChunk(int size) {
+            this.entries = new ArrayList<>(size);
+            this.recordNumbers = new ArrayList<>(size);
+        }
+    }
+
+    /**
+     * The running totals of an import. Only the writing thread touches them.
+     */
+    private static final class Progress {
+
+        private long imported;
+        private long rejected;
+        private final List<String> rejections = new ArrayList<>();
+    }
+}
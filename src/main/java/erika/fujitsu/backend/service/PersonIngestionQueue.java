@@ -0,0 +1,245 @@
+package erika.fujitsu.backend.service;
+
+import erika.fujitsu.backend.entity.PersonEntry;
+import erika.fujitsu.backend.repository.FeedbackRollups;
+import erika.fujitsu.backend.repository.PersonRepository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * PersonIngestionQueue is a bounded write-behind queue for new feedback entries: a background thread writes them
+ * in one transaction per batch-size entries, or earlier once the first one has waited the max linger time.
+ */
+@Component
+class PersonIngestionQueue {
+
+    private static final Logger LOGGER = Logger.getLogger(PersonIngestionQueue.class.getName());
+
+    private final PersonRepository personRepository;
+    private final FeedbackRollups rollups;
+    private final PersonEventBus eventBus;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<PendingEntry> queue;
+    private final int batchSize;
+    private final long maxLingerMillis;
+    private final long offerTimeoutMillis;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    /**
+     * PersonIngestionQueue constructor.
+     *
+     * @param personRepository   the repository of our feedback data
+     * @param rollups            counts the written entries for the dashboard
+     * @param eventBus           is told about every written entry
+     * @param transactionManager manages the transaction of every written batch
+     * @param capacity           maximum number of entries waiting to be written
+     * @param batchSize          maximum number of entries written in one transaction
+     * @param maxLingerMillis    how long the first entry of a batch may wait for more entries
+     * @param offerTimeoutMillis how long a submission may wait for room in a full queue
+     */
+    PersonIngestionQueue(PersonRepository personRepository,
+                         FeedbackRollups rollups,
+                         PersonEventBus eventBus,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${feedback.ingest.queue-capacity:10000}") int capacity,
+                         @Value("${feedback.ingest.batch-size:100}") int batchSize,
+                         @Value("${feedback.ingest.max-linger-ms:20}") long maxLingerMillis,
+                         @Value("${feedback.ingest.offer-timeout-ms:100}") long offerTimeoutMillis) {
+        this.personRepository = personRepository;
+        this.rollups = rollups;
+        this.eventBus = eventBus;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.maxLingerMillis = maxLingerMillis;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+    }
+
+    /**
+     * Queue an entry for writing.
+     *
+     * @param entry to save in the repository
+     * @return a future that completes with the saved entry, or exceptionally if it could not be saved
+     * (with a RejectedExecutionException if the queue was full or is stopped)
+     */
+    CompletableFuture<PersonEntry> submit(PersonEntry entry) {
+        CompletableFuture<PersonEntry> acknowledgement = new CompletableFuture<>();
+        if (!running) {
+            acknowledgement.completeExceptionally(shuttingDown());
+            return acknowledgement;
+        }
+        try {
+            PendingEntry pending = new PendingEntry(entry, acknowledgement);
+            if (!queue.offer(pending, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                acknowledgement.completeExceptionally(
+                        new RejectedExecutionException("The feedback queue is full, please try again later."));
+            } else if (!running && queue.remove(pending)) {
+                // Stopped meanwhile, and the worker may have left already; if the entry is not in the queue anymore,
+                // the worker or stop() has taken it and answers it.
+                acknowledgement.completeExceptionally(shuttingDown());
+            }
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            acknowledgement.completeExceptionally(interruptedException);
+        }
+        return acknowledgement;
+    }
+
+    /**
+     * @return the number of entries waiting to be written
+     */
+    int size() {
+        return queue.size();
+    }
+
+    /**
+     * Start the background thread that writes the queued entries.
+     */
+    @PostConstruct
+    void start() {
+        running = true;
+        worker = new Thread(this::drain, "feedback-ingest");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Stop accepting entries and wait until the ones already queued are written.
+     * The entries that are still queued after that, e.g. because they came in while the worker was leaving, fail.
+     */
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        worker.join(TimeUnit.SECONDS.toMillis(10));
+        List<PendingEntry> left = new ArrayList<>();
+        queue.drainTo(left);
+        left.forEach(pending -> pending.acknowledgement.completeExceptionally(shuttingDown()));
+    }
+
+    private static RejectedExecutionException shuttingDown() {
+        return new RejectedExecutionException("The feedback queue is shutting down, please try again later.");
+    }
+
+    /**
+     * The loop of the background thread: take the first waiting entry, linger for more, write them all.
+     */
+    private void drain() {
+        List<PendingEntry> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingEntry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxLingerMillis);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingEntry next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                write(batch);
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+                running = false;
+                batch.forEach(pending -> pending.acknowledgement.completeExceptionally(interruptedException));
+            } catch (RuntimeException unexpected) {
+                LOGGER.log(Level.SEVERE, "The feedback queue failed to write a batch.", unexpected);
+                batch.forEach(pending -> pending.acknowledgement.completeExceptionally(unexpected));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Write a batch in one transaction. If that fails, one broken entry must not take the others down with it,
+     * so the entries are written again one transaction each.
+     *
+     * @param batch the entries to write
+     */
+    private void write(List<PendingEntry> batch) {
+        List<PersonEntry> entries = new ArrayList<>(batch.size());
+        batch.forEach(pending -> entries.add(pending.entry));
+        try {
+            // An entry that has an id already is merged, and only the copy that save returns is written.
+            List<PersonEntry> written = transactionTemplate.execute(status -> {
+                List<PersonEntry> saved = personRepository.saveAll(entries);
+                rollups.add(saved);
+                return saved;
+            });
+            for (int i = 0; i < batch.size(); i++) {
+                acknowledge(batch.get(i), written.get(i));
+            }
+        } catch (RuntimeException batchException) {
+            LOGGER.log(Level.WARNING, "A feedback batch failed, writing its entries one by one.", batchException);
+            for (PendingEntry pending : batch) {
+                // The rolled back batch may have assigned an id already.
+                pending.entry.setId(null);
+                try {
+                    PersonEntry written = transactionTemplate.execute(status -> {
+                        PersonEntry saved = personRepository.save(pending.entry);
+                        rollups.add(Collections.singletonList(saved));
+                        return saved;
+                    });
+                    acknowledge(pending, written);
+                } catch (RuntimeException entryException) {
+                    // Nor may the rolled back retry leave its id on the entry of the submitter.
+                    pending.entry.setId(null);
+                    pending.acknowledgement.completeExceptionally(entryException);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tell the submitter and the open views that an entry has been written.
+     *
+     * @param pending the queued entry
+     * @param written the entry as it was written
+     */
+    private void acknowledge(PendingEntry pending, PersonEntry written) {
+        pending.acknowledgement.complete(written);
+        eventBus.publish(new PersonEvent(PersonEvent.Type.CREATED, written));
+    }
+
+    /**
+     * An entry waiting in the queue together with the future of whoever submitted it.
+     */
+    private static final class PendingEntry {
+
+        private final PersonEntry entry;
+        private final CompletableFuture<PersonEntry> acknowledgement;
+
+        private PendingEntry(PersonEntry entry, CompletableFuture<PersonEntry> acknowledgement) {
+            this.entry = entry;
+            this.acknowledgement = acknowledgement;
+        }
+    }
+}
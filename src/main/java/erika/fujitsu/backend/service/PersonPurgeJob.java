@@ -0,0 +1,44 @@
+package erika.fujitsu.backend.service;
+
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * PersonPurgeJob removes the rows of the deleted entries every feedback.purge.interval, on the scheduler thread
+ * (see PersonPurger). Not lazy, since no other bean asks for it.
+ */
+@Component
+@Lazy(false)
+class PersonPurgeJob {
+
+    private static final Logger LOGGER = Logger.getLogger(PersonPurgeJob.class.getName());
+
+    private final PersonService personService;
+
+    /**
+     * PersonPurgeJob constructor.
+     *
+     * @param personService removes the rows
+     */
+    PersonPurgeJob(PersonService personService) {
+        this.personService = personService;
+    }
+
+    /**
+     * Remove the rows of the deleted entries now. If it fails, the next run tries again.
+     */
+    @Scheduled(initialDelayString = "${feedback.purge.initial-delay:PT1M}",
+            fixedDelayString = "${feedback.purge.interval:PT1M}")
+    void purgeDeletedEntries() {
+        try {
+            personService.purgeDeleted();
+        } catch (RuntimeException failure) {
+            LOGGER.log(Level.SEVERE, "Purging the deleted feedback failed", failure);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package erika.fujitsu.backend.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+
+/**
+ * PersonPurger removes the rows of the entries flagged as deleted, batch-size entries per transaction,
+ * so that no transaction holds more than a batch of row locks.
+ */
+@Component
+class PersonPurger {
+
+    private static final Logger LOGGER = Logger.getLogger(PersonPurger.class.getName());
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    /**
+     * PersonPurger constructor.
+     *
+     * @param jdbcTemplate       finds and deletes the flagged rows
+     * @param transactionManager manages the transaction of every batch
+     * @param batchSize          number of entries removed in one transaction
+     */
+    PersonPurger(JdbcTemplate jdbcTemplate,
+                 PlatformTransactionManager transactionManager,
+                 @Value("${feedback.purge.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Remove the rows of all entries flagged as deleted.
+     *
+     * @return the number of removed entries
+     */
+    long purge() {
+        long start = System.nanoTime();
+        long purged = 0;
+        int batch;
+        do {
+            batch = purgeBatch();
+            purged += batch;
+        } while (batch == batchSize);
+        if (purged > 0) {
+            LOGGER.info(String.format("Purged %d deleted entries in %d ms",
+                    purged, (System.nanoTime() - start) / 1_000_000));
+        }
+        return purged;
+    }
+
+    /**
+     * Remove the rows of the flagged entries with the lowest ids, at most batch-size of them, in one transaction.
+     *
+     * @return the number of removed entries
+     */
+    private int purgeBatch() {
+        Integer purged = transactionTemplate.execute(status -> {
+            List<Long> found = jdbcTemplate.queryForList(
+                    "SELECT id FROM person_entry WHERE deleted = TRUE ORDER BY id LIMIT ?", Long.class, batchSize);
+            if (found.isEmpty()) {
+                return 0;
+            }
+            List<Object[]> ids = new ArrayList<>(found.size());
+            found.forEach(id -> ids.add(new Object[]{id}));
+            jdbcTemplate.batchUpdate("DELETE FROM person_entry_category WHERE person_entry_id = ?", ids);
+            jdbcTemplate.batchUpdate("DELETE FROM person_entry WHERE id = ? AND deleted = TRUE", ids);
+            return found.size();
+        });
+        return purged == null ? 0 : purged;
+    }
+}
@@ -0,0 +1,54 @@
+package erika.fujitsu.backend.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * PersonRetentionJob archives the feedback that is older than feedback.retention.max-age (an ISO-8601 duration,
+ * e.g. P365D), every feedback.retention.interval, on the scheduler thread (see PersonArchiver).
+ * Without a max-age nothing is archived. Not lazy, since no other bean asks for it.
+ */
+@Component
+@Lazy(false)
+@ConditionalOnProperty("feedback.retention.max-age")
+class PersonRetentionJob {
+
+    private static final Logger LOGGER = Logger.getLogger(PersonRetentionJob.class.getName());
+
+    private final PersonService personService;
+    private final Duration maxAge;
+
+    /**
+     * PersonRetentionJob constructor.
+     *
+     * @param personService archives the entries
+     * @param maxAge        how long entries stay in the live tables
+     */
+    PersonRetentionJob(PersonService personService, @Value("${feedback.retention.max-age}") Duration maxAge) {
+        this.personService = personService;
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Archive the entries that are older than the max-age now. If it fails, the next run tries again.
+     */
+    @Scheduled(initialDelayString = "${feedback.retention.initial-delay:PT1M}",
+            fixedDelayString = "${feedback.retention.interval:PT1H}")
+    void archiveOldEntries() {
+        try {
+            personService.archiveCreatedBefore(Instant.now().minus(maxAge));
+        } catch (IOException ioException) {
+            LOGGER.log(Level.SEVERE, "Archiving the feedback older than " + maxAge + " failed", ioException);
+        }
+    }
+}
@@ -1,12 +1,48 @@
 package erika.fujitsu.backend.service;
 
+import erika.fujitsu.backend.entity.Category;
+import erika.fujitsu.backend.entity.ContentHash;
 import erika.fujitsu.backend.entity.PersonEntry;
+import erika.fujitsu.backend.entity.PersonSummary;
 
+import erika.fujitsu.backend.repository.FeedbackRollups;
+import erika.fujitsu.backend.repository.OffsetBasedPageRequest;
 import erika.fujitsu.backend.repository.PersonRepository;
+import erika.fujitsu.backend.repository.PersonSortKey;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -14,55 +50,573 @@ import java.util.logging.Logger;
 /**
  * PersonService is a class that gives access to the repository/database to other classes.
  * No changes should be made directly in the repository! This is what PersonService is here for.
+ * The counts are cached (see STATISTICS_CACHE) until feedback is saved or deleted.
  *
  * @author Erika Maksimova
  */
 @Service
 public class PersonService {
 
+    /**
+     * The name of the cache that holds the counts. Its size and time to live are set in application.properties.
+     */
+    public static final String STATISTICS_CACHE = "feedbackStatistics";
+
+    // Keeps the IN lists of deleteAll() well below the limits of the database and of its query plan cache.
+    private static final int MAX_IDS_PER_STATEMENT = 1000;
+
     private static final Logger LOGGER = Logger.getLogger(PersonService.class.getName());
     private PersonRepository personRepository;
+    private PersonIngestionQueue ingestionQueue;
+    private PersonEventBus eventBus;
+    private PersonExporter exporter;
+    private PersonImporter importer;
+    private DuplicateDetector duplicates;
+    private SubmissionRateLimiter rateLimiter;
+    private FeedbackValidator validator;
+    private PersonArchiver archiver;
+    private PersonPurger purger;
+    private FeedbackRollups rollups;
+    private TransactionTemplate transactionTemplate;
+    private Cache statistics;
 
     /**
      * PersonService constructor.
      *
-     * @param personRepository the repository of our feedback data
+     * @param personRepository   the repository of our feedback data
+     * @param ingestionQueue     the write-behind queue that saves submitted entries in batches
+     * @param eventBus           tells the open views about every saved and deleted entry
+     * @param cacheManager       holds the cache of the counts
+     * @param exporter           streams all entries into an export file
+     * @param importer           loads the entries of an import file in large batches
+     * @param duplicates         tells whether the same feedback is stored already
+     * @param rateLimiter        limits how fast every sender can send feedback
+     * @param validator          checks submitted entries in the background
+     * @param archiver           moves old entries into archive files
+     * @param purger             removes the rows of deleted entries
+     * @param rollups            keeps the counts of the dashboard
+     * @param transactionManager manages the transactions of save(), delete() and deleteAll()
      */
-    public PersonService(PersonRepository personRepository) {
+    public PersonService(PersonRepository personRepository, PersonIngestionQueue ingestionQueue,
+                         PersonEventBus eventBus, CacheManager cacheManager, PersonExporter exporter,
+                         PersonImporter importer, DuplicateDetector duplicates, SubmissionRateLimiter rateLimiter,
+                         FeedbackValidator validator, PersonArchiver archiver, PersonPurger purger,
+                         FeedbackRollups rollups, PlatformTransactionManager transactionManager) {
         this.personRepository = personRepository;
+        this.ingestionQueue = ingestionQueue;
+        this.eventBus = eventBus;
+        this.exporter = exporter;
+        this.importer = importer;
+        this.duplicates = duplicates;
+        this.rateLimiter = rateLimiter;
+        this.validator = validator;
+        this.archiver = archiver;
+        this.purger = purger;
+        this.rollups = rollups;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+        // Every saved or deleted entry, whoever saved it, makes the cached counts stale.
+        this.statistics = cacheManager.getCache(STATISTICS_CACHE);
+        eventBus.subscribe(event -> statistics.clear());
     }
 
     /**
      * Find all stored feedback data entries.
+     * This loads the whole table into memory; to export all feedback use export() instead.
      *
      * @return a list of stored PersonEntries.
      */
+    @Transactional(readOnly = true)
     public List<PersonEntry> findAll() {
         return personRepository.findAll();
     }
 
+    /**
+     * Write all stored feedback data entries to a stream, without loading them all into memory.
+     *
+     * @param format the file format to write
+     * @param out    where to write the entries to; it is flushed but not closed
+     * @throws IOException if writing fails
+     */
+    public void export(ExportFormat format, OutputStream out) throws IOException {
+        exporter.export(format, out);
+    }
+
+    /**
+     * Load all records of a CSV or NDJSON file (as written by export()) in large batches.
+     * Records that break the rules of the feedback form (see PersonEntryRules) or repeat stored feedback
+     * are skipped and reported.
+     * The imported entries are not announced one by one to the open views; they show up on their next refresh.
+     *
+     * @param file   the file to read
+     * @param format the format of the file
+     * @return how many records were stored and rejected, and how fast
+     * @throws IOException if the file cannot be read; the records stored until then stay stored
+     */
+    public ImportReport importFile(Path file, ExportFormat format) throws IOException {
+        try {
+            return importer.importFile(file, format);
+        } finally {
+            statistics.clear();
+        }
+    }
+
+    /**
+     * Store a batch of new entries in one transaction, e.g. the ones another service sends in one request.
+     * Like the records of an import file, the entries that break the rules of the feedback form
+     * (see PersonEntryRules) or repeat stored feedback are skipped and reported by their position in the batch.
+     * A batch does not count against the rate limits, and its entries are not announced one by one to the open
+     * views; they show up on their next refresh.
+     *
+     * @param entries the new entries
+     * @return how many entries were stored and rejected, and how fast
+     */
+    public ImportReport submitAll(List<PersonEntry> entries) {
+        try {
+            return importer.importEntries(entries);
+        } finally {
+            statistics.clear();
+        }
+    }
+
+    /**
+     * Move the entries created before the given time out of the database into a gzip-compressed NDJSON file in
+     * feedback.retention.archive-dir, a chunk of entries per transaction (see PersonArchiver).
+     * The archive can be imported again with importFile(). The archived entries are not announced one by one to the
+     * open views; they disappear on their next refresh.
+     *
+     * @param before the time of creation the archived entries are older than
+     * @return the number of archived entries
+     * @throws IOException if the archive cannot be written; the chunks archived until then stay archived
+     */
+    public long archiveCreatedBefore(Instant before) throws IOException {
+        try {
+            return archiver.archive(before);
+        } finally {
+            statistics.clear();
+        }
+    }
+
+    /**
+     * Find one window of stored entries, e.g. the rows that are currently visible in the grid.
+     * The id is always appended as the last sort key so that the windows never overlap.
+     *
+     * @param offset index of the first entry
+     * @param limit  maximum number of entries
+     * @param sort   the requested order (unsorted means insertion order)
+     * @return a list of at most limit PersonEntries.
+     */
+    @Transactional(readOnly = true)
+    public List<PersonEntry> fetch(int offset, int limit, Sort sort) {
+        Sort order = (sort == null ? Sort.unsorted() : sort).and(Sort.by("id"));
+        return personRepository.findAllBy(new OffsetBasedPageRequest(offset, limit, order));
+    }
+
+    /**
+     * Find the page of entries that comes right after the given entry (keyset pagination).
+     * Pass the last entry of the current page to get the next one; the cost does not grow
+     * with the depth of the page, unlike fetch(offset, ...).
+     *
+     * @param last      the last entry of the previous page, or null for the first page
+     * @param sortKey   the column to order by
+     * @param direction the direction of the order
+     * @param limit     maximum number of entries
+     * @return a list of at most limit PersonEntries.
+     */
+    @Transactional(readOnly = true)
+    public List<PersonEntry> fetchAfter(PersonEntry last, PersonSortKey sortKey, Sort.Direction direction, int limit) {
+        return personRepository.findPageAfter(last, sortKey, direction, limit);
+    }
+
+    /**
+     * Find one window of the stored entries that have the given category.
+     *
+     * @param category the category to filter by
+     * @param offset   index of the first entry
+     * @param limit    maximum number of entries
+     * @param sort     the requested order (unsorted means insertion order)
+     * @return a list of at most limit PersonEntries.
+     */
+    @Transactional(readOnly = true)
+    public List<PersonEntry> fetchByCategory(Category category, int offset, int limit, Sort sort) {
+        Sort order = (sort == null ? Sort.unsorted() : sort).and(Sort.by("id"));
+        return personRepository.findByCategory(category, new OffsetBasedPageRequest(offset, limit, order));
+    }
+
+    /**
+     * Find one window of the stored entries whose name, email or text contain every word of the search text.
+     * The words are looked up in the full-text index, which the database updates on every save and delete.
+     *
+     * @param search   the words to search for, separated by spaces
+     * @param category the category to filter by, or null for all categories
+     * @param offset   index of the first entry
+     * @param limit    maximum number of entries
+     * @param sort     the requested order (unsorted means insertion order)
+     * @return a list of at most limit PersonEntries.
+     */
+    @Transactional(readOnly = true)
+    public List<PersonEntry> search(String search, Category category, int offset, int limit, Sort sort) {
+        Sort order = (sort == null ? Sort.unsorted() : sort).and(Sort.by("id"));
+        OffsetBasedPageRequest page = new OffsetBasedPageRequest(offset, limit, order);
+        return category == null
+                ? personRepository.search(search, page)
+                : personRepository.searchInCategory(search, category, page);
+    }
+
+    /**
+     * Find one window of entry summaries: like fetch(), but the text is cut to a preview by the database,
+     * so long feedback does not make the page heavier. Load the full text with findText() when it is needed.
+     *
+     * @param offset index of the first entry
+     * @param limit  maximum number of entries
+     * @param sort   the requested order (unsorted means insertion order)
+     * @return a list of at most limit summaries, with their categories.
+     */
+    @Transactional(readOnly = true)
+    public List<PersonSummary> fetchSummaries(int offset, int limit, Sort sort) {
+        Sort order = (sort == null ? Sort.unsorted() : sort).and(Sort.by("id"));
+        return withCategories(personRepository.findSummariesBy(new OffsetBasedPageRequest(offset, limit, order)));
+    }
+
+    /**
+     * Find one window of the summaries of the entries that have the given category (see fetchSummaries()).
+     *
+     * @param category the category to filter by
+     * @param offset   index of the first entry
+     * @param limit    maximum number of entries
+     * @param sort     the requested order (unsorted means insertion order)
+     * @return a list of at most limit summaries, with their categories.
+     */
+    @Transactional(readOnly = true)
+    public List<PersonSummary> fetchSummariesByCategory(Category category, int offset, int limit, Sort sort) {
+        Sort order = (sort == null ? Sort.unsorted() : sort).and(Sort.by("id"));
+        return withCategories(personRepository.findSummariesByCategory(category,
+                new OffsetBasedPageRequest(offset, limit, order)));
+    }
+
+    /**
+     * Find one window of the summaries of the entries that contain every word of the search text
+     * (see search() and fetchSummaries()). The full-text index gives the ids of the window, the summaries of
+     * those ids are loaded afterwards.
+     *
+     * @param search   the words to search for, separated by spaces
+     * @param category the category to filter by, or null for all categories
+     * @param offset   index of the first entry
+     * @param limit    maximum number of entries
+     * @param sort     the requested order (unsorted means insertion order)
+     * @return a list of at most limit summaries, with their categories.
+     */
+    @Transactional(readOnly = true)
+    public List<PersonSummary> searchSummaries(String search, Category category, int offset, int limit, Sort sort) {
+        Sort order = (sort == null ? Sort.unsorted() : sort).and(Sort.by("id"));
+        OffsetBasedPageRequest page = new OffsetBasedPageRequest(offset, limit, order);
+        List<Number> ids = category == null
+                ? personRepository.searchIds(search, page)
+                : personRepository.searchIdsInCategory(search, category, page);
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, PersonSummary> summaries = new HashMap<>();
+        List<Long> window = new ArrayList<>(ids.size());
+        ids.forEach(id -> window.add(id.longValue()));
+        personRepository.findSummariesByIdIn(window).forEach(summary -> summaries.put(summary.getId(), summary));
+        List<PersonSummary> ordered = new ArrayList<>(window.size());
+        for (Long id : window) {
+            PersonSummary summary = summaries.get(id);
+            // Deleted between the two queries.
+            if (summary != null) {
+                ordered.add(summary);
+            }
+        }
+        return withCategories(ordered);
+    }
+
+    /**
+     * Find one window of the summaries of the entries created in a time range (see fetchSummaries()),
+     * e.g. the feedback of one week.
+     *
+     * @param from   the earliest time of creation, included
+     * @param to     the latest time of creation, excluded
+     * @param offset index of the first entry
+     * @param limit  maximum number of entries
+     * @param sort   the requested order (unsorted means insertion order)
+     * @return a list of at most limit summaries, with their categories.
+     */
+    @Transactional(readOnly = true)
+    public List<PersonSummary> fetchSummariesCreatedBetween(Instant from, Instant to, int offset, int limit,
+                                                            Sort sort) {
+        Sort order = (sort == null ? Sort.unsorted() : sort).and(Sort.by("id"));
+        return withCategories(personRepository.findSummariesCreatedBetween(from, to,
+                new OffsetBasedPageRequest(offset, limit, order)));
+    }
+
+    /**
+     * Count the stored entries created in a time range.
+     *
+     * @param from the earliest time of creation, included
+     * @param to   the latest time of creation, excluded
+     * @return the number of entries.
+     */
+    @Transactional(readOnly = true)
+    public long countCreatedBetween(Instant from, Instant to) {
+        return personRepository.countCreatedBetween(from, to);
+    }
+
+    /**
+     * Load the full text of an entry, e.g. when the user opens a summary whose text was truncated.
+     *
+     * @param id the id of the entry
+     * @return the text, or an empty string if the entry does not exist (anymore) or has no text.
+     */
+    @Transactional(readOnly = true)
+    public String findText(Long id) {
+        return personRepository.findTextById(id).orElse("");
+    }
+
+    /**
+     * Add the categories to a page of summaries, with one query for the whole page.
+     *
+     * @param summaries the summaries as loaded by a summary query
+     * @return the same summaries
+     */
+    private List<PersonSummary> withCategories(List<PersonSummary> summaries) {
+        if (summaries.isEmpty()) {
+            return summaries;
+        }
+        Map<Long, PersonSummary> byId = new HashMap<>();
+        summaries.forEach(summary -> byId.put(summary.getId(), summary));
+        for (Object[] row : personRepository.findCategoriesByIdIn(byId.keySet())) {
+            byId.get(((Number) row[0]).longValue()).getCategories().add((Category) row[1]);
+        }
+        return summaries;
+    }
+
+    /**
+     * Count the stored entries whose name, email or text contain every word of the search text.
+     *
+     * @param search   the words to search for, separated by spaces
+     * @param category the category to filter by, or null for all categories
+     * @return the number of entries.
+     */
+    @Transactional(readOnly = true)
+    public long countSearch(String search, Category category) {
+        return category == null
+                ? personRepository.countSearch(search)
+                : personRepository.countSearchInCategory(search, category);
+    }
+
     /**
      * Count all stored entries.
      *
      * @return the number of entries.
      */
+    @Cacheable(cacheNames = STATISTICS_CACHE, key = "'count'")
+    @Transactional(readOnly = true)
     public long count() {
         return personRepository.count();
     }
 
     /**
-     * Delete a specific entry.
+     * Count the stored entries that have the given category.
+     *
+     * @param category the category to count
+     * @return the number of entries.
+     */
+    @Cacheable(cacheNames = STATISTICS_CACHE, key = "'category:' + #category")
+    @Transactional(readOnly = true)
+    public long countByCategory(Category category) {
+        return personRepository.countByCategory(category);
+    }
+
+    /**
+     * Count the stored entries of every category.
+     *
+     * @return the number of entries per category, including the categories with no entries.
+     */
+    @Cacheable(cacheNames = STATISTICS_CACHE, key = "'perCategory'")
+    @Transactional(readOnly = true)
+    public Map<Category, Long> countPerCategory() {
+        Map<Category, Long> counts = new EnumMap<>(Category.class);
+        for (Category category : Category.values()) {
+            counts.put(category, 0L);
+        }
+        for (Object[] row : personRepository.countPerCategory()) {
+            counts.put(Category.valueOf((String) row[0]), ((Number) row[1]).longValue());
+        }
+        // The rows of the deleted entries are in the category index until they are purged.
+        for (Object[] row : personRepository.countDeletedPerCategory()) {
+            counts.merge(Category.valueOf((String) row[0]), -((Number) row[1]).longValue(), Long::sum);
+        }
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * Count the stored entries created on each of the last days (in the time zone of the server).
+     *
+     * @param days how many days to count, today included
+     * @return the number of entries per day, oldest day first, including the days with no entries.
+     */
+    @Cacheable(cacheNames = STATISTICS_CACHE, key = "'perDay:' + #days")
+    @Transactional(readOnly = true)
+    public Map<LocalDate, Long> countPerDay(int days) {
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate first = LocalDate.now(zone).minusDays(days - 1L);
+        Map<LocalDate, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < days; i++) {
+            counts.put(first.plusDays(i), 0L);
+        }
+        for (Object[] row : personRepository.countPerDaySince(first.atStartOfDay(zone).toInstant())) {
+            counts.put(((Date) row[0]).toLocalDate(), ((Number) row[1]).longValue());
+        }
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * Count the stored entries of every category created in each of the last hours (in the time zone of the server).
+     * The counts are read from FeedbackRollups, a row per hour and category at most.
+     *
+     * @param hours how many hours to count, the current one included
+     * @return the number of entries per hour and category, oldest hour first, including the hours and categories
+     * with no entries.
+     */
+    @Cacheable(cacheNames = STATISTICS_CACHE, key = "'perHourAndCategory:' + #hours")
+    @Transactional(readOnly = true)
+    public Map<LocalDateTime, Map<Category, Long>> countPerHourAndCategory(int hours) {
+        LocalDateTime first = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(hours - 1L);
+        Map<LocalDateTime, Map<Category, Long>> counts = new LinkedHashMap<>();
+        for (int i = 0; i < hours; i++) {
+            counts.put(first.plusHours(i), zeroPerCategory());
+        }
+        for (Object[] row : rollups.countPerHourAndCategory(first, first.plusHours(hours))) {
+            counts.get((LocalDateTime) row[0]).put(Category.valueOf((String) row[1]), ((Number) row[2]).longValue());
+        }
+        counts.replaceAll((hour, perCategory) -> Collections.unmodifiableMap(perCategory));
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * Count the stored entries of every category created on each of the last days (in the time zone of the server).
+     * The counts are summed up from the hours of FeedbackRollups, at most 24 rows per day and category.
+     *
+     * @param days how many days to count, today included
+     * @return the number of entries per day and category, oldest day first, including the days and categories
+     * with no entries.
+     */
+    @Cacheable(cacheNames = STATISTICS_CACHE, key = "'perDayAndCategory:' + #days")
+    @Transactional(readOnly = true)
+    public Map<LocalDate, Map<Category, Long>> countPerDayAndCategory(int days) {
+        LocalDate today = LocalDate.now();
+        LocalDate first = today.minusDays(days - 1L);
+        Map<LocalDate, Map<Category, Long>> counts = new LinkedHashMap<>();
+        for (int i = 0; i < days; i++) {
+            counts.put(first.plusDays(i), zeroPerCategory());
+        }
+        for (Object[] row : rollups.countPerHourAndCategory(first.atStartOfDay(), today.plusDays(1).atStartOfDay())) {
+            counts.get(((LocalDateTime) row[0]).toLocalDate())
+                    .merge(Category.valueOf((String) row[1]), ((Number) row[2]).longValue(), Long::sum);
+        }
+        counts.replaceAll((day, perCategory) -> Collections.unmodifiableMap(perCategory));
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * Find the email addresses that sent the most feedback. The addresses are compared trimmed and in lower case.
+     *
+     * @param limit the maximum number of addresses
+     * @return the number of stored entries per address, most entries first.
+     */
+    @Cacheable(cacheNames = STATISTICS_CACHE, key = "'topSubmitters:' + #limit")
+    @Transactional(readOnly = true)
+    public Map<String, Long> topSubmitters(int limit) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Object[] row : rollups.findTopSubmitters(limit)) {
+            counts.put((String) row[0], ((Number) row[1]).longValue());
+        }
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * @return a count of zero for every category.
+     */
+    private static Map<Category, Long> zeroPerCategory() {
+        Map<Category, Long> counts = new EnumMap<>(Category.class);
+        for (Category category : Category.values()) {
+            counts.put(category, 0L);
+        }
+        return counts;
+    }
+
+    /**
+     * Delete a specific entry. It disappears from every read at once, its row is removed later (see purgeDeleted()).
      *
      * @param entry to delete
      */
     public void delete(PersonEntry entry) {
-        personRepository.delete(entry);
+        if (entry.getId() == null) {
+            // Never stored, nothing to delete or to tell.
+            return;
+        }
+        Integer deleted = transactionTemplate.execute(status -> {
+            // As it is stored, not as the caller has it.
+            rollups.removeStored(entry.getId());
+            return personRepository.markDeleted(Collections.singletonList(entry.getId()));
+        });
+        if (deleted != null && deleted == 1) {
+            // Not deleted already, by another user.
+            eventBus.publish(new PersonEvent(PersonEvent.Type.DELETED, entry));
+        }
+    }
+
+    /**
+     * Delete many entries at once, e.g. a wave of spam. The entries are flagged as deleted with a statement per
+     * thousand entries, all in one transaction, and disappear from every read at once; their rows are removed later
+     * in small batches (see purgeDeleted()). Their content stays known to the duplicate check until then.
+     * Like submitAll(), the deleted entries are not announced one by one to the open views; they disappear on their
+     * next refresh.
+     *
+     * @param ids the ids of the entries; the ones that are not stored or deleted already are skipped
+     * @return the number of entries deleted
+     */
+    public int deleteAll(Collection<Long> ids) {
+        List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        distinct.remove(null);
+        if (distinct.isEmpty()) {
+            return 0;
+        }
+        try {
+            Integer deleted = transactionTemplate.execute(status -> {
+                int flagged = 0;
+                for (int from = 0; from < distinct.size(); from += MAX_IDS_PER_STATEMENT) {
+                    List<Long> chunk = distinct.subList(from, Math.min(from + MAX_IDS_PER_STATEMENT, distinct.size()));
+                    rollups.removeStored(chunk);
+                    flagged += personRepository.markDeleted(chunk);
+                }
+                return flagged;
+            });
+            return deleted == null ? 0 : deleted;
+        } finally {
+            statistics.clear();
+        }
     }
 
     /**
-     * Save a specific entry,
+     * Remove the rows of the deleted entries from the database, a batch of feedback.purge.batch-size entries per
+     * transaction (see PersonPurger). The entries are gone from every read already, so the counts do not change.
+     *
+     * @return the number of removed entries
+     */
+    public long purgeDeleted() {
+        return purger.purge();
+    }
+
+    /**
+     * Save a specific entry.
+     * A new entry counts against the rate limit of its email address and must not repeat stored feedback.
      *
      * @param entry to save in the repository
+     * @throws FeedbackRejectedException if the entry is new and repeats stored feedback or its sender is
+     *                                   sending too fast, or if a changed entry now repeats another one or was
+     *                                   deleted in the meantime
      */
     public void save(PersonEntry entry) {
         if (entry == null) {
@@ -70,7 +624,164 @@ public class PersonService {
                     "The entry is null. Are you sure you have connected your form to the application?");
             return;
         }
-        personRepository.save(entry);
+        boolean created = entry.getId() == null;
+        entry.setContentHash(ContentHash.of(entry));
+        if (created) {
+            admit(entry, null);
+        }
+        PersonEntry saved;
+        try {
+            saved = transactionTemplate.execute(status -> {
+                // Takes a changed entry off the counts as it was stored, before it is counted as it is now.
+                Instant createdAt = rollups.removeStored(entry.getId());
+                if (!created && createdAt == null) {
+                    // @Where hides its row from the merge, which would store the entry again as a new one.
+                    throw new FeedbackRejectedException(FeedbackRejectedException.Reason.DELETED);
+                }
+                PersonEntry written = personRepository.save(entry);
+                if (createdAt != null) {
+                    // created_at is not updatable, the entry stays in the hour it was stored in.
+                    written.setCreatedAt(createdAt);
+                }
+                rollups.add(Collections.singletonList(written));
+                return written;
+            });
+        } catch (DataIntegrityViolationException violation) {
+            if (created) {
+                // The rolled back insert may have assigned an id already.
+                entry.setId(null);
+            }
+            throw rejectedIfDuplicate(entry, violation);
+        }
+        eventBus.publish(new PersonEvent(created ? PersonEvent.Type.CREATED : PersonEvent.Type.UPDATED, saved));
+    }
+
+    /**
+     * Submit a new entry without waiting for the database.
+     * The entry is queued and saved together with other submissions in one batch.
+     *
+     * @param entry to save in the repository
+     * @return a future that completes with the saved entry, or exceptionally if it could not be saved
+     * (a RejectedExecutionException means the queue is full and the entry should be submitted again later)
+     */
+    public CompletableFuture<PersonEntry> submit(PersonEntry entry) {
+        return submit(entry, null);
+    }
+
+    /**
+     * Submit a new entry from a browser session without waiting for the database (see submit(PersonEntry)).
+     * The entry counts against the rate limits of its email address and of the session right away; then it is checked
+     * (see FeedbackValidator) and queued for writing, neither of which happens on the calling thread.
+     *
+     * @param entry      to save in the repository
+     * @param sessionKey identifies the session that sends the entry, or null if it has none
+     * @return a future that completes with the saved entry, or exceptionally if it could not be saved
+     * (a RejectedExecutionException means the checks or the queue are full and the entry should be submitted again
+     * later, a FeedbackRejectedException that it breaks the rules of the form, comes from an email domain that may not
+     * send feedback, repeats stored feedback or that its sender is sending too fast)
+     */
+    public CompletableFuture<PersonEntry> submit(PersonEntry entry, String sessionKey) {
+        CompletableFuture<PersonEntry> failed = new CompletableFuture<>();
+        if (entry == null) {
+            LOGGER.log(Level.SEVERE,
+                    "The entry is null. Are you sure you have connected your form to the application?");
+            failed.completeExceptionally(new IllegalArgumentException("The entry is null."));
+            return failed;
+        }
+        boolean created = entry.getId() == null;
+        entry.setContentHash(ContentHash.of(entry));
+        try {
+            throttle(entry, sessionKey);
+        } catch (FeedbackRejectedException rejected) {
+            failed.completeExceptionally(rejected);
+            return failed;
+        }
+        CompletableFuture<PersonEntry> saved = new CompletableFuture<>();
+        validator.validate(entry)
+                .thenCompose(ingestionQueue::submit)
+                .whenComplete((written, error) -> {
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    if (cause == null) {
+                        saved.complete(written);
+                    } else {
+                        if (created) {
+                            // Like in save(): the rolled back insert may have assigned an id and a time already.
+                            entry.setId(null);
+                            entry.setCreatedAt(null);
+                        }
+                        saved.completeExceptionally(cause instanceof DataIntegrityViolationException
+                                ? rejectedIfDuplicate(entry, (DataIntegrityViolationException) cause) : cause);
+                    }
+                });
+        return saved;
+    }
+
+    /**
+     * Check in the background whether feedback may be sent from an email address (see EmailDomainCheck),
+     * e.g. as soon as the user has typed it. submit() checks it again.
+     *
+     * @param email the email address
+     * @return a future that completes with true if feedback may be sent from the address
+     */
+    public CompletableFuture<Boolean> isEmailDomainAllowed(String email) {
+        return validator.isEmailDomainAllowed(email);
+    }
+
+    /**
+     * Refuse new feedback whose sender is sending too fast, or that is stored already.
+     * The rate limits come first, so that a burst of clicks does not reach the database at all.
+     *
+     * @param entry      the new entry, with its content hash
+     * @param sessionKey identifies the session that sends the entry, or null if it has none
+     * @throws FeedbackRejectedException if the entry is refused
+     */
+    private void admit(PersonEntry entry, String sessionKey) {
+        throttle(entry, sessionKey);
+        if (duplicates.isDuplicate(entry.getContentHash())) {
+            throw new FeedbackRejectedException(FeedbackRejectedException.Reason.DUPLICATE);
+        }
+    }
+
+    /**
+     * Refuse new feedback whose sender is sending too fast. Taking a token never blocks.
+     *
+     * @param entry      the new entry
+     * @param sessionKey identifies the session that sends the entry, or null if it has none
+     * @throws FeedbackRejectedException if the entry is refused
+     */
+    private void throttle(PersonEntry entry, String sessionKey) {
+        if (sessionKey != null && !rateLimiter.tryAcquire("session:" + sessionKey)) {
+            throw new FeedbackRejectedException(FeedbackRejectedException.Reason.RATE_LIMITED);
+        }
+        String email = String.valueOf(entry.getEmail()).trim().toLowerCase(Locale.ROOT);
+        if (!rateLimiter.tryAcquire("email:" + email)) {
+            throw new FeedbackRejectedException(FeedbackRejectedException.Reason.RATE_LIMITED);
+        }
+    }
+
+    /**
+     * Tell a duplicate that got past admit(), e.g. one sent twice at the same moment, from other broken constraints.
+     *
+     * @param entry     the entry that could not be written
+     * @param violation the exception of the database
+     * @return a FeedbackRejectedException if the same content is stored, otherwise the violation itself
+     */
+    private RuntimeException rejectedIfDuplicate(PersonEntry entry, DataIntegrityViolationException violation) {
+        if (entry.getContentHash() != null && personRepository.existsByContentHash(entry.getContentHash())) {
+            return new FeedbackRejectedException(FeedbackRejectedException.Reason.DUPLICATE, violation);
+        }
+        return violation;
+    }
+
+    /**
+     * Get told about every entry that is saved or deleted from now on, by any user.
+     * The listener is called on the thread that saved the entry, after the change was committed.
+     *
+     * @param listener receives a PersonEvent per saved or deleted entry
+     * @return an action that unsubscribes the listener; run it when the listener is not needed anymore
+     */
+    public Runnable subscribe(Consumer<PersonEvent> listener) {
+        return eventBus.subscribe(listener);
     }
 
     /**
@@ -83,9 +794,12 @@ public class PersonService {
             PersonEntry fujitsuEntry = new PersonEntry();
             fujitsuEntry.setName("Otto Lakk");
             fujitsuEntry.setEmail("test@fujitsu.ee");
-            fujitsuEntry.setCategories("Patients portal, Microsoft SharePoint");
+            fujitsuEntry.setCategories(EnumSet.of(Category.PATIENTS_PORTAL, Category.MICROSOFT_SHAREPOINT));
             fujitsuEntry.setText("Feedback text");
-            personRepository.save(fujitsuEntry);
+            transactionTemplate.executeWithoutResult(status -> {
+                personRepository.save(fujitsuEntry);
+                rollups.add(Collections.singletonList(fujitsuEntry));
+            });
         }
     }
 }
@@ -0,0 +1,89 @@
+package erika.fujitsu.backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * SubmissionRateLimiter limits how fast one sender (an email address or a browser session) can send feedback,
+ * with a TokenBucket per sender: a burst of entries at once, then a steady number per minute.
+ * The buckets are kept in a cache of at most max-keys senders, which forgets a sender once its bucket would be
+ * full again, so the memory stays bounded even when every request comes from a new address.
+ */
+@Component
+class SubmissionRateLimiter {
+
+    private final Cache<String, TokenBucket> buckets;
+    private final int burst;
+    private final long intervalNanos;
+
+    /**
+     * SubmissionRateLimiter constructor.
+     *
+     * @param burst     how many entries a sender can send at once
+     * @param perMinute how many entries a sender can send per minute after the burst
+     * @param maxKeys   how many senders are tracked at most
+     */
+    @Autowired
+    SubmissionRateLimiter(@Value("${feedback.rate-limit.burst:5}") int burst,
+                          @Value("${feedback.rate-limit.per-minute:6}") int perMinute,
+                          @Value("${feedback.rate-limit.max-keys:100000}") int maxKeys) {
+        this(burst, perMinute, maxKeys, Ticker.systemTicker());
+    }
+
+    /**
+     * SubmissionRateLimiter constructor with its own clock, for tests.
+     *
+     * @param burst     how many entries a sender can send at once
+     * @param perMinute how many entries a sender can send per minute after the burst
+     * @param maxKeys   how many senders are tracked at most
+     * @param ticker    the clock of the cache, in System.nanoTime() values
+     */
+    SubmissionRateLimiter(int burst, int perMinute, int maxKeys, Ticker ticker) {
+        this.burst = burst;
+        this.intervalNanos = TimeUnit.MINUTES.toNanos(1) / perMinute;
+        // A bucket that has not been used for burst intervals is full again, forgetting it changes nothing.
+        // The cache evicts in the background of the calls, never by scanning all senders on one of them.
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(burst * intervalNanos, TimeUnit.NANOSECONDS)
+                .ticker(ticker)
+                .executor(Runnable::run)
+                .build();
+    }
+
+    /**
+     * Take a token of a sender.
+     *
+     * @param key identifies the sender
+     * @return true if the sender may send now
+     */
+    boolean tryAcquire(String key) {
+        return tryAcquire(key, System.nanoTime());
+    }
+
+    /**
+     * Take a token of a sender at the given time.
+     *
+     * @param key identifies the sender
+     * @param now the current System.nanoTime()
+     * @return true if the sender may send now
+     */
+    boolean tryAcquire(String key, long now) {
+        return buckets.get(key, newKey -> new TokenBucket(burst, intervalNanos, now)).tryAcquire(now);
+    }
+
+    /**
+     * @return the number of senders tracked right now
+     */
+    int size() {
+        buckets.cleanUp();
+        return (int) buckets.estimatedSize();
+    }
+}
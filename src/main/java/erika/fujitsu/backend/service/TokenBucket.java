@@ -0,0 +1,50 @@
+package erika.fujitsu.backend.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * TokenBucket allows a burst of actions at once and then one action per interval.
+ * Instead of a token count and a refill time it keeps a single number, the time at which the bucket is full again
+ * (the generic cell rate algorithm), so taking a token is one compare-and-set and never blocks: under contention
+ * a thread that loses the race just tries again with the new value.
+ * Times are System.nanoTime() values.
+ */
+final class TokenBucket {
+
+    private final long intervalNanos;
+    private final long capacityNanos;
+    private final AtomicLong fullAt;
+
+    /**
+     * TokenBucket constructor. The bucket starts full.
+     *
+     * @param burst         the number of tokens of a full bucket
+     * @param intervalNanos the time after which a taken token is back
+     * @param now           the current time
+     */
+    TokenBucket(int burst, long intervalNanos, long now) {
+        this.intervalNanos = intervalNanos;
+        this.capacityNanos = burst * intervalNanos;
+        this.fullAt = new AtomicLong(now);
+    }
+
+    /**
+     * Take a token if there is one.
+     *
+     * @param now the current time
+     * @return true if a token was taken, false if the bucket is empty
+     */
+    boolean tryAcquire(long now) {
+        while (true) {
+            long full = fullAt.get();
+            long next = (full - now > 0 ? full : now) + intervalNanos;
+            if (next - now > capacityNanos) {
+                return false;
+            }
+            if (fullAt.compareAndSet(full, next)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package erika.fujitsu.frontend.dashboard;
+
+import com.vaadin.flow.component.AttachEvent;
+import com.vaadin.flow.component.DetachEvent;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.dependency.CssImport;
+import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.component.grid.GridVariant;
+import com.vaadin.flow.component.html.Div;
+import com.vaadin.flow.component.html.H2;
+import com.vaadin.flow.router.PageTitle;
+import com.vaadin.flow.router.Route;
+import erika.fujitsu.backend.entity.Category;
+import erika.fujitsu.backend.service.BackendExecutor;
+import erika.fujitsu.backend.service.PersonService;
+import erika.fujitsu.frontend.main.MainView;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * DashboardView shows how much feedback arrives: the entries of every category per hour of the last day and per day
+ * of the last month, and the senders of the most feedback.
+ * The numbers come from the cached counts of PersonService, which are read from rollup tables (see FeedbackRollups),
+ * so opening the dashboard costs the same however many entries are stored. Like the grid of FeedbackFormView it is
+ * refreshed when entries are saved or deleted, once per burst of events. The counts are read in the background
+ * (see BackendExecutor), never while the session is locked, and pushed once they are there.
+ */
+@Route(value = "dashboard", layout = MainView.class)
+@PageTitle("Feedback dashboard")
+@CssImport("./views/dashboard/dashboard-view.css")
+public class DashboardView extends Div {
+
+    private static final int HOURS = 24;
+    private static final int DAYS = 30;
+    private static final int TOP_SUBMITTERS = 10;
+    private static final DateTimeFormatter HOUR_FORMAT = DateTimeFormatter.ofPattern("EEE dd.MM HH:00");
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("EEE dd.MM");
+
+    private final PersonService personService;
+    private final BackendExecutor backendExecutor;
+    private final Grid<Map.Entry<LocalDateTime, Map<Category, Long>>> perHour = new Grid<>();
+    private final Grid<Map.Entry<LocalDate, Map<Category, Long>>> perDay = new Grid<>();
+    private final Grid<Map.Entry<String, Long>> topSubmitters = new Grid<>();
+
+    // Stops the PersonEvents of the backend once the view is closed.
+    private Runnable eventSubscription;
+    // Set while a refresh is waiting to be read, so that a burst of new entries only refreshes once.
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+
+    /**
+     * DashboardView constructor.
+     *
+     * @param personService   the service the counts are read from
+     * @param backendExecutor reads the counts in the background
+     */
+    public DashboardView(PersonService personService, BackendExecutor backendExecutor) {
+        this.personService = personService;
+        this.backendExecutor = backendExecutor;
+        addClassName("dashboard-view");
+
+        perHour.addColumn(row -> HOUR_FORMAT.format(row.getKey())).setHeader("Hour").setAutoWidth(true);
+        perDay.addColumn(row -> DAY_FORMAT.format(row.getKey())).setHeader("Day").setAutoWidth(true);
+        for (Category category : Category.values()) {
+            perHour.addColumn(row -> row.getValue().get(category)).setHeader(category.getLabel());
+            perDay.addColumn(row -> row.getValue().get(category)).setHeader(category.getLabel());
+        }
+        perHour.addColumn(row -> total(row.getValue())).setHeader("Total");
+        perDay.addColumn(row -> total(row.getValue())).setHeader("Total");
+        topSubmitters.addColumn(Map.Entry::getKey).setHeader("Email").setAutoWidth(true);
+        topSubmitters.addColumn(Map.Entry::getValue).setHeader("Entries");
+        for (Grid<?> grid : new Grid<?>[]{perHour, perDay, topSubmitters}) {
+            grid.addThemeVariants(GridVariant.LUMO_COMPACT, GridVariant.LUMO_ROW_STRIPES);
+            grid.setHeightByRows(true);
+        }
+
+        add(new H2("Last " + HOURS + " hours"), perHour,
+                new H2("Last " + DAYS + " days"), perDay,
+                new H2("Top " + TOP_SUBMITTERS + " submitters"), topSubmitters);
+    }
+
+    /**
+     * Fill in the counts when the view is opened, and start listening to the entries saved and deleted by all users.
+     * The counts are read in the background and shown through UI.access(), which pushes them.
+     *
+     * @param attachEvent the event of opening the view
+     */
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+        super.onAttach(attachEvent);
+        UI ui = attachEvent.getUI();
+        refresh(ui);
+        eventSubscription = personService.subscribe(event -> {
+            if (refreshPending.compareAndSet(false, true)) {
+                refresh(ui);
+            }
+        });
+    }
+
+    /**
+     * When the view is closed, it stops listening to the entries of other users.
+     *
+     * @param detachEvent the event of closing the view
+     */
+    @Override
+    protected void onDetach(DetachEvent detachEvent) {
+        eventSubscription.run();
+        eventSubscription = null;
+        super.onDetach(detachEvent);
+    }
+
+    /**
+     * Read the current counts in the background, then show them in the grids, the latest hour and day on top.
+     * If they cannot be read in time, the grids keep the counts they show.
+     *
+     * @param ui the UI of this view
+     */
+    private void refresh(UI ui) {
+        backendExecutor.readAsync(() -> {
+            refreshPending.set(false);
+            return new Counts(personService.countPerHourAndCategory(HOURS),
+                    personService.countPerDayAndCategory(DAYS), personService.topSubmitters(TOP_SUBMITTERS));
+        }).whenComplete((counts, error) -> {
+            if (counts == null) {
+                // The next event tries again.
+                refreshPending.set(false);
+                return;
+            }
+            ui.access(() -> {
+                perHour.setItems(newestFirst(counts.perHour));
+                perDay.setItems(newestFirst(counts.perDay));
+                topSubmitters.setItems(new ArrayList<>(counts.topSubmitters.entrySet()));
+            });
+        });
+    }
+
+    private static <K> List<Map.Entry<K, Map<Category, Long>>> newestFirst(Map<K, Map<Category, Long>> counts) {
+        List<Map.Entry<K, Map<Category, Long>>> rows = new ArrayList<>(counts.entrySet());
+        Collections.reverse(rows);
+        return rows;
+    }
+
+    private static long total(Map<Category, Long> counts) {
+        return counts.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * The counts of the grids, read together in the background.
+     */
+    private static final class Counts {
+
+        private final Map<LocalDateTime, Map<Category, Long>> perHour;
+        private final Map<LocalDate, Map<Category, Long>> perDay;
+        private final Map<String, Long> topSubmitters;
+
+        private Counts(Map<LocalDateTime, Map<Category, Long>> perHour, Map<LocalDate, Map<Category, Long>> perDay,
+                       Map<String, Long> topSubmitters) {
+            this.perHour = perHour;
+            this.perDay = perDay;
+            this.topSubmitters = topSubmitters;
+        }
+    }
+}
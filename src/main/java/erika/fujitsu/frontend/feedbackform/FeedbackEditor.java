@@ -0,0 +1,294 @@
+package erika.fujitsu.frontend.feedbackform;
+
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.HasStyle;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.button.ButtonVariant;
+import com.vaadin.flow.component.formlayout.FormLayout;
+import com.vaadin.flow.component.html.Div;
+import com.vaadin.flow.component.html.H4;
+import com.vaadin.flow.component.notification.Notification;
+import com.vaadin.flow.component.orderedlayout.FlexComponent;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
+import com.vaadin.flow.component.textfield.EmailField;
+import com.vaadin.flow.component.textfield.TextArea;
+import com.vaadin.flow.component.textfield.TextField;
+import com.vaadin.flow.data.binder.Binder;
+import com.vaadin.flow.data.binder.ValidationException;
+import com.vaadin.flow.function.SerializableRunnable;
+import com.vaadin.flow.server.VaadinSession;
+import erika.fujitsu.backend.entity.Category;
+import erika.fujitsu.backend.entity.PersonEntry;
+import erika.fujitsu.backend.entity.PersonEntryRules;
+import erika.fujitsu.backend.service.BackendExecutor;
+import erika.fujitsu.backend.service.FeedbackRejectedException;
+import erika.fujitsu.backend.service.PersonService;
+
+import org.vaadin.gatanaso.MultiselectComboBox;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+
+/**
+ * FeedbackEditor is the Feedback Sender form of the FeedbackFormView.
+ * It validates the data input and then tells the PersonService instance to
+ * save the new feedback into the local database.
+ * Only the field rules of the binder run while the session is locked; they are cheap and mark the fields at once.
+ * Everything that may wait (the checks of the backend, which may ask the DNS or the database, and the write itself)
+ * runs on background threads of PersonService, and only the outcome comes back under the lock through UI.access(),
+ * so a slow database never freezes the browser.
+ * The fields, their binder and the category combo box are most of the server-side memory of the view,
+ * so the view only creates the editor once the user wants to write feedback (see FeedbackFormView).
+ */
+class FeedbackEditor extends Div {
+
+    // The session attribute that identifies the browser session for the rate limit of the backend.
+    private static final String RATE_LIMIT_KEY = "feedback.rate-limit-key";
+
+    private final TextField name = new TextField("Name");
+    private final EmailField email = new EmailField("Email");
+    // A user-made component; extends the official Vaadin Component. Not supported in tests.
+    private final MultiselectComboBox<Category> categories = new MultiselectComboBox<>();
+    private final TextArea text = new TextArea("Text");
+
+    private final Button cancel = new Button("Cancel");
+    private final Button save = new Button("Send");
+
+    // A plain Binder: the rules are the validators below, PersonEntry has no bean validation annotations
+    // that a BeanValidationBinder would have to introspect.
+    private final Binder<PersonEntry> binder = new Binder<>();
+    private final PersonService personService;
+    private final BackendExecutor backendExecutor;
+    private PersonEntry personEntry;
+
+    /**
+     * FeedbackEditor constructor.
+     *
+     * @param personService   saves the new and the edited feedback
+     * @param backendExecutor runs the save of edited feedback
+     * @param onCancel        runs after the "Cancel" button has cleared the form
+     */
+    FeedbackEditor(PersonService personService, BackendExecutor backendExecutor, SerializableRunnable onCancel) {
+        this.personService = personService;
+        this.backendExecutor = backendExecutor;
+        setId("editor-layout");
+
+        Div editorDiv = new Div();
+        editorDiv.setId("editor");
+        editorDiv.add(createHeadline(), createFormLayout());
+        add(editorDiv);
+        createButtonLayout();
+
+        // The button "cancel" now clears our form, then the view refreshes the grid of data once again.
+        cancel.addClickListener(e -> {
+            clearForm();
+            onCancel.run();
+        });
+
+        // The button "save" now submits all of the data in the form (see submit()).
+        save.addClickListener(e -> submit(UI.getCurrent()));
+    }
+
+    /**
+     * Send the feedback of the form in three steps.
+     * First the binder checks the fields and writes them into personEntry if it is an entry being edited, else into
+     * a new entry, so that a refused submission leaves nothing behind for the next one; all under the session lock.
+     * Then PersonService checks a new entry and queues it for saving into the repository, on its own threads; an
+     * edited entry is not new feedback, so it skips the rate limit and the duplicate check and is saved through
+     * PersonService.save() on a writer thread of BackendExecutor. The button is disabled until the backend answers.
+     * Last the answer is pushed back to the browser through UI.access(): the form is cleared, or the reason of a
+     * refusal is shown (at the email field too if its domain may not send feedback). The grid does not need a reload:
+     * like in every other open view, it is updated by the PersonEvent of the entry (see FeedbackFormView.onAttach).
+     * If another exception was raised, nothing happens except a notification saying that something went wrong.
+     *
+     * @param ui the UI of the form
+     */
+    private void submit(UI ui) {
+        PersonEntry entry = this.personEntry != null && this.personEntry.getId() != null
+                ? this.personEntry : new PersonEntry();
+        try {
+            binder.writeBean(entry);
+        } catch (ValidationException validationException) {
+            Notification.show(FeedbackRejectedException.Reason.INVALID.getMessage());
+            return;
+        }
+
+        save.setEnabled(false);
+        boolean edited = entry.getId() != null;
+        CompletableFuture<PersonEntry> written = edited
+                ? backendExecutor.writeAsync(() -> {
+                    personService.save(entry);
+                    return entry;
+                })
+                : personService.submit(entry, sessionKey(ui.getSession()));
+        written.whenComplete((saved, error) ->
+                ui.access(() -> {
+                    save.setEnabled(true);
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    if (cause == null) {
+                        clearForm();
+                        Notification.show(edited ? "Your feedback has been updated." : "Thank you for your feedback!");
+                    } else if (cause instanceof FeedbackRejectedException) {
+                        if (((FeedbackRejectedException) cause).getReason()
+                                == FeedbackRejectedException.Reason.EMAIL_DOMAIN) {
+                            showEmailDomainNotAllowed();
+                        }
+                        Notification.show(cause.getMessage());
+                    } else {
+                        Notification.show("We could not save your feedback right now. Please try again!");
+                    }
+                }));
+    }
+
+    /**
+     * Check the domain of the email address in the background once the user has typed it (see
+     * PersonService.isEmailDomainAllowed()), and mark the field if feedback cannot be sent from it.
+     * The answer is dropped if the address has changed in the meantime.
+     *
+     * @param address the address in the field
+     */
+    private void checkEmailDomain(String address) {
+        if (!PersonEntryRules.isEmail(address)) {
+            return;
+        }
+        UI ui = UI.getCurrent();
+        personService.isEmailDomainAllowed(address).thenAccept(allowed -> {
+            if (!allowed) {
+                ui.access(() -> {
+                    if (address.equals(email.getValue())) {
+                        showEmailDomainNotAllowed();
+                    }
+                });
+            }
+        });
+    }
+
+    private void showEmailDomainNotAllowed() {
+        email.setErrorMessage(FeedbackRejectedException.Reason.EMAIL_DOMAIN.getMessage());
+        email.setInvalid(true);
+    }
+
+    /**
+     * The headline that is displayed on top of the form.
+     *
+     * @return the headline
+     */
+    static Component createHeadline() {
+        HorizontalLayout headlineLayout = new HorizontalLayout();
+        headlineLayout.setId("headline");
+        headlineLayout.setAlignItems(FlexComponent.Alignment.CENTER);
+        headlineLayout.add(new H4("Please give us feedback"));
+        return headlineLayout;
+    }
+
+    /**
+     * This method creates the feedback form itself.
+     * Every TextField is also configured here, making sure the data input is correctly validated.
+     *
+     * @return the form
+     */
+    private FormLayout createFormLayout() {
+        // Making working buttons: data validation
+        // Name text field: the full name should contain a whitespace and be minimum 5 letters long.
+        name.setClearButtonVisible(true);
+        name.setPlaceholder("Your full name");
+        // The rules themselves are in PersonEntryRules, shared with the bulk import.
+        binder.forField(name)
+                .withValidator(PersonEntryRules::isFullName, PersonEntryRules.NAME_NOT_FULL)
+                .withValidator(PersonEntryRules::isLongEnoughName, PersonEntryRules.NAME_TOO_SHORT)
+                .bind(PersonEntry::getName, PersonEntry::setName);
+        // Email field: should be the correct email format
+        email.setClearButtonVisible(true);
+        email.setPlaceholder("Your email address");
+        email.setErrorMessage(PersonEntryRules.EMAIL_INVALID);
+        binder.forField(email)
+                .withValidator(PersonEntryRules::isEmail, PersonEntryRules.EMAIL_INVALID)
+                .bind(PersonEntry::getEmail, PersonEntry::setEmail);
+        // The domain may need the DNS, so it is checked in the background (see checkEmailDomain()).
+        email.addValueChangeListener(event -> {
+            if (event.isFromClient()) {
+                checkEmailDomain(event.getValue());
+            }
+        });
+        // Categories: a category should be chosen! The item list is shared by all sessions.
+        categories.setLabel("Application categories");
+        categories.setItems(Category.ALL);
+        categories.setItemLabelGenerator(Category::getLabel);
+        categories.setPlaceholder("Select one or more category");
+        categories.setErrorMessage("Please choose a category");
+        categories.setClearButtonVisible(true);
+        binder.forField(categories)
+                .asRequired(PersonEntryRules.CATEGORIES_MISSING)
+                .bind(PersonEntry::getCategories, PersonEntry::setCategories);
+        // Text field: at least something should be typed.
+        text.setPlaceholder("Your feedback here");
+        text.getStyle().set("minHeight", "100px");
+        text.setHelperText("Here you can share what you've liked and what can be improved");
+        text.setMaxLength(PersonEntryRules.MAX_TEXT_LENGTH);
+        binder.forField(text)
+                .asRequired(PersonEntryRules.TEXT_MISSING)
+                .withValidator(PersonEntryRules::isShortEnoughText, PersonEntryRules.TEXT_TOO_LONG)
+                .bind(PersonEntry::getText, PersonEntry::setText);
+
+
+        FormLayout formLayout = new FormLayout();
+        Component[] fields = new Component[]{name, email, categories, text};
+
+        for (Component field : fields) {
+            ((HasStyle) field).addClassName("full-width");
+        }
+        formLayout.add(fields);
+        return formLayout;
+    }
+
+    /**
+     * Create a new layout for correct button placement.
+     */
+    private void createButtonLayout() {
+        HorizontalLayout buttonLayout = new HorizontalLayout();
+        buttonLayout.setId("button-layout");
+        buttonLayout.setWidthFull();
+        buttonLayout.setSpacing(true);
+        cancel.addThemeVariants(ButtonVariant.LUMO_TERTIARY);
+        save.addThemeVariants(ButtonVariant.LUMO_PRIMARY);
+        buttonLayout.add(save, cancel);
+        add(buttonLayout);
+    }
+
+    /**
+     * The key of the browser session for the rate limit: a random id kept in the session, so that all the tabs
+     * of one browser share a limit and nothing about the session itself leaves it.
+     *
+     * @param session the session of the user, locked by the current request
+     * @return the key of the session
+     */
+    private static String sessionKey(VaadinSession session) {
+        String key = (String) session.getAttribute(RATE_LIMIT_KEY);
+        if (key == null) {
+            key = UUID.randomUUID().toString();
+            session.setAttribute(RATE_LIMIT_KEY, key);
+        }
+        return key;
+    }
+
+    /**
+     * This method once again makes this.personEntry == null, which effectively clears our form.
+     */
+    void clearForm() {
+        setPersonEntry(null);
+    }
+
+    /**
+     * This method sets this.personEntry to the passed value.
+     * The binder then reads the entry, all of its variables bound tot he fields.
+     *
+     * @param value of the entry
+     */
+    void setPersonEntry(PersonEntry value) {
+        this.personEntry = value;
+        binder.readBean(this.personEntry);
+    }
+}
@@ -1,44 +1,62 @@
 package erika.fujitsu.frontend.feedbackform;
 
-import com.vaadin.flow.component.html.H4;
 import com.vaadin.flow.component.orderedlayout.FlexComponent;
-import com.vaadin.flow.component.textfield.EmailField;
-import com.vaadin.flow.component.textfield.TextArea;
 import com.vaadin.flow.component.textfield.TextField;
-import com.vaadin.flow.data.validator.EmailValidator;
+import com.vaadin.flow.data.value.ValueChangeMode;
+import erika.fujitsu.backend.entity.Category;
 import erika.fujitsu.backend.entity.PersonEntry;
+import erika.fujitsu.backend.entity.PersonSummary;
+import erika.fujitsu.backend.service.BackendExecutor;
+import erika.fujitsu.backend.service.ExportFormat;
+import erika.fujitsu.backend.service.PersonEvent;
 import erika.fujitsu.backend.service.PersonService;
-import com.vaadin.flow.component.Component;
-import com.vaadin.flow.component.HasStyle;
+import com.vaadin.flow.component.AttachEvent;
+import com.vaadin.flow.component.Text;
+import com.vaadin.flow.component.DetachEvent;
+import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
-import com.vaadin.flow.component.formlayout.FormLayout;
+import com.vaadin.flow.component.combobox.ComboBox;
 import com.vaadin.flow.component.grid.Grid;
 import com.vaadin.flow.component.grid.GridVariant;
+import com.vaadin.flow.component.html.Anchor;
 import com.vaadin.flow.component.html.Div;
-import com.vaadin.flow.component.notification.Notification;
+import com.vaadin.flow.component.icon.VaadinIcon;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.splitlayout.SplitLayout;
-import com.vaadin.flow.data.binder.BeanValidationBinder;
-import com.vaadin.flow.data.binder.ValidationException;
+import com.vaadin.flow.data.provider.ConfigurableFilterDataProvider;
+import com.vaadin.flow.data.provider.DataProvider;
+import com.vaadin.flow.data.provider.Query;
+import com.vaadin.flow.data.provider.SortDirection;
+import com.vaadin.flow.data.renderer.ComponentRenderer;
 
 import erika.fujitsu.frontend.main.MainView;
 
 import com.vaadin.flow.router.Route;
+import com.vaadin.flow.server.StreamResource;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.RouteAlias;
 import com.vaadin.flow.component.dependency.CssImport;
 
-import org.vaadin.gatanaso.MultiselectComboBox;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
 
-import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 /**
  * FeedbackFormView class controls the database grid layout
- * as well as the Feedback Sender form.
- * It also validates the data input and then tells the PersonService instance to
- * save the new feedback into the local database.
+ * as well as the Feedback Sender form (see FeedbackEditor).
+ * Every open view costs server memory for as long as its session lives, so the view keeps little state:
+ * the grid columns read the entries through getters instead of bean introspection, the category lists are
+ * shared by all sessions, and in the lazy editor mode the form is only created when the user asks for it.
+ * The grid reads its rows through the reads bulkhead of BackendExecutor, so a slow database keeps the request that
+ * scrolls the grid waiting for at most feedback.executor.reads.timeout.
  *
  * @author Erika Maksimova
  */
@@ -48,196 +66,311 @@ import java.util.Collections;
 @CssImport("./views/feedbackform/feedbackform-view.css")
 public class FeedbackFormView extends Div {
 
-    private final Grid<PersonEntry> grid = new Grid<>(PersonEntry.class, false);
+    // The number of rows per grid fetch, tagged by the kind of filter ("all", "category" or "search").
+    private static final String FETCH_SIZE_METRIC = "feedback.grid.fetch.rows";
 
-    private final TextField name = new TextField("Name");
-    private final EmailField email = new EmailField("Email");
-    // A user-made component; extends the official Vaadin Component. Not supported in tests.
-    private final MultiselectComboBox<String> categories = new MultiselectComboBox<>();
-    private final TextArea text = new TextArea("Text");
+    private final Grid<PersonSummary> grid = new Grid<>();
+    private final TextField searchField = new TextField();
+    private final ComboBox<Category> categoryFilter = new ComboBox<>();
+    private ConfigurableFilterDataProvider<PersonSummary, Void, GridFilter> dataProvider;
 
-    private final Button cancel = new Button("Cancel");
-    private final Button save = new Button("Send");
+    private final SplitLayout splitLayout = new SplitLayout();
+    // Created on first use in the lazy editor mode, right away otherwise.
+    private FeedbackEditor editor;
 
-    private final BeanValidationBinder<PersonEntry> binder;
     private final PersonService personService;
-    private PersonEntry personEntry;
+    private final BackendExecutor backendExecutor;
+    // The rows per fetch of every kind of filter, registered once per view instead of on every fetch.
+    private final DistributionSummary allFetchSize;
+    private final DistributionSummary categoryFetchSize;
+    private final DistributionSummary searchFetchSize;
+
+    // Stops the PersonEvents of the backend once the view is closed.
+    private Runnable eventSubscription;
+    // Set while a grid refresh is waiting for the UI lock, so that a burst of new entries only refreshes once.
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
 
 
     /**
      * FeedbackFormView constructor.
      *
-     * @param personService instance is passed as an argument to access/modify the database
-     *                      without directly working with the PersonRepository (our database) class.
+     * @param personService   instance is passed as an argument to access/modify the database
+     *                        without directly working with the PersonRepository (our database) class.
+     * @param backendExecutor runs the reads of the grid and the saves of edited feedback
+     * @param meterRegistry   records how many rows the grid fetches at a time
+     * @param lazyEditor      true to create the feedback form only when the user clicks "Write feedback",
+     *                        false to show it right away
      */
-    public FeedbackFormView(PersonService personService) {
+    public FeedbackFormView(PersonService personService, BackendExecutor backendExecutor, MeterRegistry meterRegistry,
+                            @Value("${feedback.view.lazy-editor:true}") boolean lazyEditor) {
         this.personService = personService;
+        this.backendExecutor = backendExecutor;
+        this.allFetchSize = fetchSize(meterRegistry, "all");
+        this.categoryFetchSize = fetchSize(meterRegistry, "category");
+        this.searchFetchSize = fetchSize(meterRegistry, "search");
         addClassName("feedbackform-view");
 
-        // Tie the binder to the PersonEntry class
-        binder = new BeanValidationBinder<>(PersonEntry.class);
-
         // Create UI
-        SplitLayout splitLayout = new SplitLayout();
         splitLayout.setSizeFull();
-        createGridLayout(splitLayout);
-        createFeedbackSaverLayout(splitLayout);
+        createGridLayout();
+        createFeedbackSaverLayout(lazyEditor);
         add(splitLayout);
 
         // Configure Grid
         configureGrid();
-        // Update form
+        // Connect the grid to the database
         updateGrid();
+    }
 
-        // The button "cancel" now clears our form and then refreshes the grid of data once again.
-        cancel.addClickListener(e -> {
-            clearForm();
-            refreshGrid();
-        });
+    /**
+     * When the view is opened, it starts listening to the entries saved and deleted by all users.
+     * Events arrive on the thread that saved the entry, so they are applied through UI.access() and pushed.
+     *
+     * @param attachEvent the event of opening the view
+     */
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+        super.onAttach(attachEvent);
+        UI ui = attachEvent.getUI();
+        eventSubscription = personService.subscribe(event -> applyEvent(ui, event));
+    }
 
-        // The button "save" now saves all of the data in the form (if no exceptions were thrown).
-        // All of our bound fields are now personEntry variables that get saved into the repository.
-        // Then the form clears the form, updates the grid with a new entry and refreshes its columns width.
-        // If an exception was raised, nothing happens except a notification saying that something went wrong.
-        save.addClickListener(e -> {
-            try {
-                if (this.personEntry == null) {
-                    this.personEntry = new PersonEntry();
-                }
-                binder.writeBean(this.personEntry);
-
-                personService.save(this.personEntry);
-                clearForm();
-                updateGrid();
-                refreshGrid();
-                Notification.show("Thank you for your feedback!");
-            } catch (ValidationException validationException) {
-                Notification.show("Your feedback is not complete. Please fill all of the fields correctly!");
-            }
-        });
+    /**
+     * When the view is closed, it stops listening to the entries of other users.
+     *
+     * @param detachEvent the event of closing the view
+     */
+    @Override
+    protected void onDetach(DetachEvent detachEvent) {
+        eventSubscription.run();
+        eventSubscription = null;
+        super.onDetach(detachEvent);
+    }
+
+    /**
+     * Apply a saved or deleted entry to the grid with as little work as possible.
+     * An updated entry is replaced in place if it is on screen. A new or deleted entry moves the rows after it,
+     * so the grid re-fetches its visible window (never the whole table); a burst of events causes only one refresh.
+     *
+     * @param ui    the UI of this view
+     * @param event what happened to which entry
+     */
+    private void applyEvent(UI ui, PersonEvent event) {
+        if (event.getType() == PersonEvent.Type.UPDATED) {
+            ui.access(() -> dataProvider.refreshItem(PersonSummary.of(event.getEntry())));
+        } else if (refreshPending.compareAndSet(false, true)) {
+            ui.access(() -> {
+                refreshPending.set(false);
+                dataProvider.refreshAll();
+            });
+        }
     }
 
     /**
      * This method configures the grid.
-     * Every column is now "bound" to the PersonEntry variable with the same name.
+     * Every column reads its PersonSummary variable through the getter; the sort property is the name of the
+     * PersonEntry variable, which the backend queries sort by.
+     * The grid only gets the beginning of long texts; clicking such a row loads the whole text into
+     * a details row below it, and clicking it again closes it.
      */
     private void configureGrid() {
         grid.addClassName("person-entry-grid");
-        grid.addColumn("name").setAutoWidth(true);
-        grid.addColumn("email").setAutoWidth(true);
-        grid.addColumn("categories").setAutoWidth(true);
-        grid.addColumn("text").setAutoWidth(true);
+        grid.addColumn(PersonSummary::getName).setHeader("Name").setSortProperty("name").setAutoWidth(true);
+        grid.addColumn(PersonSummary::getEmail).setHeader("Email").setSortProperty("email").setAutoWidth(true);
+        grid.addColumn(entry -> Category.toLabels(entry.getCategories())).setHeader("Categories").setAutoWidth(true);
+        grid.addColumn(PersonSummary::getTextPreview).setHeader("Text").setSortProperty("text").setAutoWidth(true);
         grid.addThemeVariants(GridVariant.LUMO_NO_BORDER);
-        grid.setHeightFull();
+        grid.setItemDetailsRenderer(new ComponentRenderer<>(entry -> {
+            Div details = new Div(new Text(backendExecutor.read(() -> personService.findText(entry.getId()))));
+            details.addClassName("feedback-text");
+            return details;
+        }));
+        grid.setDetailsVisibleOnClick(false);
+        grid.addItemClickListener(e -> {
+            PersonSummary entry = e.getItem();
+            if (entry.isTextTruncated()) {
+                grid.setDetailsVisible(entry, !grid.isDetailsVisible(entry));
+            }
+        });
+
+        // Search the name, email and text of the feedback. The words are looked up in the full-text index,
+        // and only once the user stops typing for a moment.
+        searchField.setPlaceholder("Search feedback");
+        searchField.setPrefixComponent(VaadinIcon.SEARCH.create());
+        searchField.setClearButtonVisible(true);
+        searchField.setValueChangeMode(ValueChangeMode.LAZY);
+        searchField.addValueChangeListener(e -> updateFilter());
+
+        // Only show the feedback of one category. The filter is answered from the category index.
+        categoryFilter.setPlaceholder("Filter by category");
+        categoryFilter.setItems(Category.ALL);
+        categoryFilter.setItemLabelGenerator(Category::getLabel);
+        categoryFilter.setClearButtonVisible(true);
+        categoryFilter.addValueChangeListener(e -> updateFilter());
     }
 
     /**
-     * This method creates the feedback form itself.
-     * Every TextField is also configured here, making sure the data input is correctly validated.
+     * Put the feedback form next to the grid, or in the lazy editor mode a button that creates it.
+     * Most users only read the grid, and the form (fields, binder, category combo box) is the larger part of
+     * the memory the view keeps for as long as the session lives.
      *
-     * @param splitLayout: grid + feedback form together
+     * @param lazyEditor true to create the form only when it is asked for
      */
-    private void createFeedbackSaverLayout(SplitLayout splitLayout) {
-        Div feedbackLayoutDiv = new Div();
-        feedbackLayoutDiv.setId("editor-layout");
-        Div editorDiv = new Div();
-        editorDiv.setId("editor");
-
-        // The headline that is displayed on top of the form.
-        HorizontalLayout headlineLayout = new HorizontalLayout();
-        headlineLayout.setId("headline");
-        headlineLayout.setAlignItems(FlexComponent.Alignment.CENTER);
-        headlineLayout.add(new H4("Please give us feedback"));
-
-        feedbackLayoutDiv.add(editorDiv);
-
-        // Making working buttons: data validation
-        // Name text field: the full name should contain a whitespace and be minimum 5 letters long.
-        name.setClearButtonVisible(true);
-        name.setPlaceholder("Your full name");
-        binder.forField(name)
-                .withValidator(n -> n.contains(" "), "Please enter your full (first and last) name!")
-                .withValidator(n -> n.length() >= 5, "Your full name should be at least four letters!")
-                .bind(PersonEntry::getName, PersonEntry::setName);
-        // Email field: should be the correct email format
-        email.setClearButtonVisible(true);
-        email.setPlaceholder("Your email address");
-        email.setErrorMessage("Please enter a valid email address!");
-        binder.forField(email)
-                .withValidator(new EmailValidator("Please enter a valid email address!"))
-                .bind(PersonEntry::getEmail, PersonEntry::setEmail);
-        // Categories: a category should be chosen!
-        categories.setLabel("Application categories");
-        categories.setItems("Patients portal", "Doctors portal",
-                "Registration", "Virtual visit",
-                "Open KM", "Microsoft SharePoint");
-        categories.setPlaceholder("Select one or more category");
-        categories.setErrorMessage("Please choose a category");
-        categories.setClearButtonVisible(true);
-        binder.forField(categories)
-                .asRequired("Please choose at least one category")
-                .bind(personEntry -> Collections.singleton(personEntry.getCategories()),
-                        (personEntry, formValue) -> personEntry.setCategories(String.join(", ", formValue)));
-        // Text field: at least something should be typed.
-        text.setPlaceholder("Your feedback here");
-        text.getStyle().set("minHeight", "100px");
-        text.setHelperText("Here you can share what you've liked and what can be improved");
-        binder.forField(text)
-                .asRequired("The feedback cannot be empty")
-                .bind(PersonEntry::getText, PersonEntry::setText);
-
-
-        FormLayout formLayout = new FormLayout();
-        Component[] fields = new Component[]{name, email, categories, text};
-
-        for (Component field : fields) {
-            ((HasStyle) field).addClassName("full-width");
+    private void createFeedbackSaverLayout(boolean lazyEditor) {
+        if (!lazyEditor) {
+            openEditor();
+            return;
         }
-        formLayout.add(fields);
-        editorDiv.add(headlineLayout, formLayout);
-        createButtonLayout(feedbackLayoutDiv);
-
-        splitLayout.addToSecondary(feedbackLayoutDiv);
+        Div placeholderLayout = new Div();
+        placeholderLayout.setId("editor-layout");
+        Div placeholder = new Div();
+        placeholder.setId("editor");
+        Button write = new Button("Write feedback", VaadinIcon.EDIT.create(), e -> openEditor());
+        write.addThemeVariants(ButtonVariant.LUMO_PRIMARY);
+        placeholder.add(FeedbackEditor.createHeadline(), write);
+        placeholderLayout.add(placeholder);
+        splitLayout.addToSecondary(placeholderLayout);
     }
 
     /**
-     * Create a new layout for correct button placement.
+     * Create the feedback form if it does not exist yet and show it next to the grid.
      *
-     * @param editorLayoutDiv our feedback form layout
+     * @return the feedback form
      */
-    private void createButtonLayout(Div editorLayoutDiv) {
-        HorizontalLayout buttonLayout = new HorizontalLayout();
-        buttonLayout.setId("button-layout");
-        buttonLayout.setWidthFull();
-        buttonLayout.setSpacing(true);
-        cancel.addThemeVariants(ButtonVariant.LUMO_TERTIARY);
-        save.addThemeVariants(ButtonVariant.LUMO_PRIMARY);
-        buttonLayout.add(save, cancel);
-        editorLayoutDiv.add(buttonLayout);
+    private FeedbackEditor openEditor() {
+        if (editor == null) {
+            editor = new FeedbackEditor(personService, backendExecutor, this::refreshGrid);
+            splitLayout.addToSecondary(editor);
+        }
+        return editor;
     }
 
     /**
      * Create a new layout for our grid of data stored.
      *
-     * @param splitLayout our main layout (grid + feedback form together)
+     * Its place is the first half of our main layout (grid + feedback form together).
      */
-    private void createGridLayout(SplitLayout splitLayout) {
+    private void createGridLayout() {
         Div wrapper = new Div();
         wrapper.setId("grid-wrapper");
         wrapper.setWidthFull();
         splitLayout.addToPrimary(wrapper);
-        wrapper.add(grid);
+        HorizontalLayout toolbar = new HorizontalLayout(searchField, categoryFilter,
+                createExportLink(ExportFormat.CSV, "Export CSV"), createExportLink(ExportFormat.NDJSON, "Export JSON"));
+        toolbar.setId("grid-toolbar");
+        toolbar.setDefaultVerticalComponentAlignment(FlexComponent.Alignment.BASELINE);
+        wrapper.add(toolbar, grid);
+    }
+
+    /**
+     * Create a download link for all stored feedback.
+     * The file is written while it is downloaded, entry by entry, so even a huge export does not fill the memory.
+     *
+     * @param format the file format of the export
+     * @param text   the text of the link
+     * @return the link
+     */
+    private Anchor createExportLink(ExportFormat format, String text) {
+        StreamResource resource = new StreamResource("feedback." + format.getFileExtension(),
+                (out, session) -> personService.export(format, out));
+        resource.setContentType(format.getContentType());
+        resource.setCacheTime(0);
+        Anchor link = new Anchor(resource, text);
+        link.getElement().setAttribute("download", true);
+        return link;
     }
 
     /**
      * Update the grid.
-     * This method adds all of the current data stored to the grid.
+     * This method connects the grid to a lazy data provider: the grid only asks for the rows
+     * it is about to show, so the session never holds the whole table in memory.
+     * The filter of the data provider is the search text and the category chosen above the grid.
      */
     private void updateGrid() {
-        grid.setItems(personService.findAll());
+        dataProvider = DataProvider.fromFilteringCallbacks(this::fetchRows, this::countRows)
+                .withConfigurableFilter();
+        grid.setDataProvider(dataProvider);
         grid.recalculateColumnWidths();
     }
 
+    /**
+     * Pass the current search text and category to the data provider, which then reloads the grid.
+     */
+    private void updateFilter() {
+        dataProvider.setFilter(new GridFilter(searchField.getValue(), categoryFilter.getValue()));
+    }
+
+    /**
+     * Fetch the rows the grid asks for, using the cheapest PersonService query that matches the filter.
+     * The rows are summaries, so a page costs the same however long the feedback texts are.
+     *
+     * @param query the window, order and filter the grid asks for
+     * @return the entries of the window
+     */
+    private Stream<PersonSummary> fetchRows(Query<PersonSummary, GridFilter> query) {
+        GridFilter filter = query.getFilter().orElse(GridFilter.NONE);
+        List<PersonSummary> rows;
+        DistributionSummary fetchSize;
+        int offset = query.getOffset();
+        int limit = query.getLimit();
+        Sort sort = toSort(query);
+        if (filter.search != null) {
+            rows = backendExecutor.read(() -> personService.searchSummaries(filter.search, filter.category,
+                    offset, limit, sort));
+            fetchSize = searchFetchSize;
+        } else if (filter.category != null) {
+            rows = backendExecutor.read(() -> personService.fetchSummariesByCategory(filter.category, offset, limit,
+                    sort));
+            fetchSize = categoryFetchSize;
+        } else {
+            rows = backendExecutor.read(() -> personService.fetchSummaries(offset, limit, sort));
+            fetchSize = allFetchSize;
+        }
+        fetchSize.record(rows.size());
+        return rows.stream();
+    }
+
+    private static DistributionSummary fetchSize(MeterRegistry meterRegistry, String filter) {
+        return DistributionSummary.builder(FETCH_SIZE_METRIC)
+                .baseUnit("rows")
+                .tag("filter", filter)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Count the rows that match the filter of the grid.
+     *
+     * @param query the filter the grid asks for
+     * @return the number of matching entries
+     */
+    private int countRows(Query<PersonSummary, GridFilter> query) {
+        GridFilter filter = query.getFilter().orElse(GridFilter.NONE);
+        long count;
+        if (filter.search != null) {
+            count = backendExecutor.read(() -> personService.countSearch(filter.search, filter.category));
+        } else if (filter.category != null) {
+            count = backendExecutor.read(() -> personService.countByCategory(filter.category));
+        } else {
+            count = backendExecutor.read(personService::count);
+        }
+        return Math.toIntExact(count);
+    }
+
+    /**
+     * Translate the sort orders of a grid query into a Spring Data Sort.
+     *
+     * @param query the query the grid has sent to the data provider
+     * @return the same order as a Sort
+     */
+    private static Sort toSort(Query<PersonSummary, ?> query) {
+        List<Sort.Order> orders = query.getSortOrders().stream()
+                .map(order -> order.getDirection() == SortDirection.DESCENDING
+                        ? Sort.Order.desc(order.getSorted())
+                        : Sort.Order.asc(order.getSorted()))
+                .collect(Collectors.toList());
+        return Sort.by(orders);
+    }
+
     /**
      * This method refreshes the grid.
      */
@@ -247,20 +380,27 @@ public class FeedbackFormView extends Div {
     }
 
     /**
-     * This method once again makes this.personEntry == null, which effectively clears our form.
+     * This method shows the passed entry in the feedback form, creating the form if needed.
+     *
+     * @param value of the entry
      */
-    private void clearForm() {
-        setPersonEntry(null);
+    public void setPersonEntry(PersonEntry value) {
+        openEditor().setPersonEntry(value);
     }
 
     /**
-     * This method sets this.personEntry to the passed value.
-     * The binder then reads the entry, all of its variables bound tot he fields.
-     *
-     * @param value of the entry
+     * The filter of the grid: the search text (null when the search field is blank) and the category (or null).
      */
-    public void setPersonEntry(PersonEntry value) {
-        this.personEntry = value;
-        binder.readBean(this.personEntry);
+    private static final class GridFilter {
+
+        private static final GridFilter NONE = new GridFilter(null, null);
+
+        private final String search;
+        private final Category category;
+
+        private GridFilter(String search, Category category) {
+            this.search = search == null || search.trim().isEmpty() ? null : search.trim();
+            this.category = category;
+        }
     }
 }
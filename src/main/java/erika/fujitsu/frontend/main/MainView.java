@@ -1,34 +1,64 @@
 package erika.fujitsu.frontend.main;
 
+import com.vaadin.flow.component.AttachEvent;
 import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.applayout.AppLayout;
 import com.vaadin.flow.component.applayout.DrawerToggle;
 import com.vaadin.flow.component.html.Image;
 import com.vaadin.flow.component.html.H1;
+import com.vaadin.flow.component.html.H2;
 import com.vaadin.flow.component.html.Label;
 import com.vaadin.flow.component.orderedlayout.FlexComponent;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.page.Push;
+import com.vaadin.flow.router.RouterLink;
 import com.vaadin.flow.server.PWA;
 import com.vaadin.flow.component.dependency.JsModule;
 import com.vaadin.flow.component.dependency.CssImport;
+import erika.fujitsu.backend.entity.Category;
+import erika.fujitsu.backend.service.BackendExecutor;
+import erika.fujitsu.backend.service.PersonService;
+import erika.fujitsu.frontend.dashboard.DashboardView;
+import erika.fujitsu.frontend.feedbackform.FeedbackFormView;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
 
 
 /**
  * The main view is a website as a whole layout class.
  * This class makes sure Drawer and header layouts are properly configured.
+ * As the root layout it also enables server push, so background threads can update the open views.
+ * The drawer links the feedback form and the dashboard, and shows the feedback statistics, read from the cached
+ * counts of PersonService in the background (see BackendExecutor) and pushed once they are there.
  *
  * @author Erika Maksimova
  */
+@Push
 @PWA(name = "fujitsu", shortName = "fujitsu", enableInstallPrompt = false)
 @JsModule("./styles/shared-styles.js")
 @CssImport("./views/main/main-view.css")
 public class MainView extends AppLayout {
 
+    private static final int STATISTICS_DAYS = 7;
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("EEE dd.MM");
+
+    private final PersonService personService;
+    private final BackendExecutor backendExecutor;
+    private final VerticalLayout statistics = new VerticalLayout();
+
     /**
      * When created, it automatically creates the drawer menu as well as the drawer content and the header.
+     *
+     * @param personService   the service the statistics are read from
+     * @param backendExecutor reads the statistics in the background
      */
-    public MainView() {
+    public MainView(PersonService personService, BackendExecutor backendExecutor) {
+        this.personService = personService;
+        this.backendExecutor = backendExecutor;
         setPrimarySection(Section.DRAWER);
         addToNavbar(true, createHeaderContent());
         addToDrawer(createDrawerContent());
@@ -73,6 +103,12 @@ public class MainView extends AppLayout {
         logoLayout.add(new H1("made by erika m. for fujitsu"));
         layout.add(logoLayout);
 
+        VerticalLayout navigation = new VerticalLayout();
+        navigation.setId("navigation");
+        navigation.add(new RouterLink("Feedback", FeedbackFormView.class));
+        navigation.add(new RouterLink("Dashboard", DashboardView.class));
+        layout.add(navigation);
+
         VerticalLayout description = new VerticalLayout();
         description.setId("desc");
         description.setAlignItems(FlexComponent.Alignment.CENTER);
@@ -82,6 +118,60 @@ public class MainView extends AppLayout {
         description.add(new Label("April 2021"));
         layout.add(description);
 
+        statistics.setId("statistics");
+        statistics.setSpacing(false);
+        layout.add(statistics);
+
         return layout;
     }
+
+    /**
+     * Fill in the statistics every time the layout is shown, so a reload shows the current numbers.
+     * The counts come from the cache, so this does not cost a query per page view. When the cache is empty they are
+     * counted in the background, without the session lock, and pushed through UI.access() once they are there.
+     */
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+        super.onAttach(attachEvent);
+        statistics.removeAll();
+        statistics.add(new H2("Feedback statistics"));
+        UI ui = attachEvent.getUI();
+        backendExecutor.readAsync(() -> new Statistics(personService.count(), personService.countPerCategory(),
+                personService.countPerDay(STATISTICS_DAYS)))
+                .whenComplete((counts, error) -> ui.access(() -> showStatistics(counts)));
+    }
+
+    /**
+     * @param counts the counts to show, or null if they could not be read
+     */
+    private void showStatistics(Statistics counts) {
+        if (counts == null) {
+            statistics.add(new Label("The statistics cannot be read right now."));
+            return;
+        }
+        statistics.add(new Label("Total: " + counts.total));
+        for (Map.Entry<Category, Long> perCategory : counts.perCategory.entrySet()) {
+            statistics.add(new Label(perCategory.getKey().getLabel() + ": " + perCategory.getValue()));
+        }
+        statistics.add(new H2("Last " + STATISTICS_DAYS + " days"));
+        for (Map.Entry<LocalDate, Long> perDay : counts.perDay.entrySet()) {
+            statistics.add(new Label(DAY_FORMAT.format(perDay.getKey()) + ": " + perDay.getValue()));
+        }
+    }
+
+    /**
+     * The counts of the statistics, read together in the background.
+     */
+    private static final class Statistics {
+
+        private final long total;
+        private final Map<Category, Long> perCategory;
+        private final Map<LocalDate, Long> perDay;
+
+        private Statistics(long total, Map<Category, Long> perCategory, Map<LocalDate, Long> perDay) {
+            this.total = total;
+            this.perCategory = perCategory;
+            this.perDay = perDay;
+        }
+    }
 }
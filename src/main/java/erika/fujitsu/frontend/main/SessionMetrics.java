@@ -0,0 +1,46 @@
+package erika.fujitsu.frontend.main;
+
+import com.vaadin.flow.server.ServiceInitEvent;
+import com.vaadin.flow.server.VaadinServiceInitListener;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * SessionMetrics counts the open Vaadin sessions and UIs (browser tabs) as the gauges vaadin.sessions and vaadin.uis.
+ * Together with the heap metrics they tell how much memory one user costs.
+ * Vaadin picks it up as a service init listener because it is a Spring bean.
+ */
+@Component
+public class SessionMetrics implements VaadinServiceInitListener {
+
+    private final AtomicInteger sessions = new AtomicInteger();
+    private final AtomicInteger uis = new AtomicInteger();
+
+    /**
+     * SessionMetrics constructor.
+     *
+     * @param meterRegistry where the gauges are registered
+     */
+    public SessionMetrics(MeterRegistry meterRegistry) {
+        Gauge.builder("vaadin.sessions", sessions, AtomicInteger::get)
+                .description("Open Vaadin sessions")
+                .register(meterRegistry);
+        Gauge.builder("vaadin.uis", uis, AtomicInteger::get)
+                .description("Open Vaadin UIs, one per browser tab")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void serviceInit(ServiceInitEvent event) {
+        event.getSource().addSessionInitListener(sessionInit -> sessions.incrementAndGet());
+        event.getSource().addSessionDestroyListener(sessionDestroy -> sessions.decrementAndGet());
+        event.getSource().addUIInitListener(uiInit -> {
+            uis.incrementAndGet();
+            uiInit.getUI().addDetachListener(detach -> uis.decrementAndGet());
+        });
+    }
+}
@@ -0,0 +1,32 @@
+-- The PersonEntry schema as the entities map it (Hibernate checks it on start with ddl-auto=validate).
+-- Later schema changes go into new V<n>__<description>.sql files next to this one; never edit an applied one.
+-- A database created before Flyway was used is baselined at this version instead: bring it up to date with the
+-- scripts in db/upgrade first.
+
+-- INCREMENT BY has to match spring.jpa.properties.feedback.id.allocation-size.
+CREATE SEQUENCE person_entry_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE person_entry (
+    id BIGINT NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    email VARCHAR(255) NOT NULL,
+    name VARCHAR(255) NOT NULL,
+    text VARCHAR(10000),
+    PRIMARY KEY (id)
+);
+CREATE INDEX idx_person_entry_name_id ON person_entry (name, id);
+CREATE INDEX idx_person_entry_email_id ON person_entry (email, id);
+CREATE INDEX idx_person_entry_created_at ON person_entry (created_at);
+
+CREATE TABLE person_entry_category (
+    person_entry_id BIGINT NOT NULL,
+    category VARCHAR(32) NOT NULL,
+    PRIMARY KEY (person_entry_id, category),
+    FOREIGN KEY (person_entry_id) REFERENCES person_entry (id)
+);
+CREATE INDEX idx_person_entry_category ON person_entry_category (category, person_entry_id);
+
+-- The full-text index of the name, email and text (see FullTextIndex, which only creates it when it is missing).
+CREATE ALIAS IF NOT EXISTS FT_INIT FOR "org.h2.fulltext.FullText.init";
+CALL FT_INIT();
+CALL FT_CREATE_INDEX('PUBLIC', 'PERSON_ENTRY', 'NAME,EMAIL,TEXT');
@@ -0,0 +1,5 @@
+-- The content hash of every entry (see ContentHash): the same feedback can only be stored once.
+-- The entries stored before stay without a hash until they are saved again; a unique index allows any number of NULLs,
+-- so duplicates among them do not stop the migration.
+ALTER TABLE person_entry ADD COLUMN content_hash VARCHAR(64);
+CREATE UNIQUE INDEX uk_person_entry_content_hash ON person_entry (content_hash);
@@ -0,0 +1,25 @@
+-- The counts of the dashboard, kept up to date by every write (see FeedbackRollups), so that they are read without
+-- going through person_entry. The hour is the wall-clock hour of created_at as it is stored; the email address is
+-- trimmed and in lower case.
+CREATE TABLE feedback_hourly_rollup (
+    hour TIMESTAMP NOT NULL,
+    category VARCHAR(32) NOT NULL,
+    entries BIGINT NOT NULL,
+    PRIMARY KEY (hour, category)
+);
+
+CREATE TABLE feedback_submitter_rollup (
+    email VARCHAR(255) NOT NULL,
+    entries BIGINT NOT NULL,
+    PRIMARY KEY (email)
+);
+CREATE INDEX idx_feedback_submitter_rollup_entries ON feedback_submitter_rollup (entries DESC);
+
+-- The counts of the entries stored before.
+INSERT INTO feedback_hourly_rollup (hour, category, entries)
+SELECT DATE_TRUNC('HOUR', e.created_at), c.category, COUNT(*)
+FROM person_entry e JOIN person_entry_category c ON c.person_entry_id = e.id
+GROUP BY DATE_TRUNC('HOUR', e.created_at), c.category;
+
+INSERT INTO feedback_submitter_rollup (email, entries)
+SELECT LOWER(TRIM(email)), COUNT(*) FROM person_entry GROUP BY LOWER(TRIM(email));
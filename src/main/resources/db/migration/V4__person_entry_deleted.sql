@@ -0,0 +1,8 @@
+-- Soft delete (see PersonService.deleteAll() and PersonPurger): a deleted entry is flagged first and its row removed
+-- later in small batches. The index finds the flagged rows without a scan; there are few of them at any time.
+-- H2 rebuilds the table to add a column, and its full-text triggers lose track of the index on the way, which breaks
+-- every search until a restart; so the full-text index is dropped first and created again, indexing the entries anew.
+CALL FT_DROP_INDEX('PUBLIC', 'PERSON_ENTRY');
+ALTER TABLE person_entry ADD COLUMN deleted BOOLEAN DEFAULT FALSE NOT NULL;
+CALL FT_CREATE_INDEX('PUBLIC', 'PERSON_ENTRY', 'NAME,EMAIL,TEXT');
+CREATE INDEX idx_person_entry_deleted_id ON person_entry (deleted, id);
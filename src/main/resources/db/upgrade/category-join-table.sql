@@ -0,0 +1,22 @@
+-- Upgrades a PersonEntry database created while categories were one comma separated column.
+-- Before: person_entry.categories = 'Patients portal, Microsoft SharePoint'
+-- After:  one person_entry_category row per category, indexed by (category, person_entry_id).
+-- Run it once, after pooled-person-entry-id.sql, before starting the new version of the application.
+-- The LIKE scans below are the last full scans category queries will ever need.
+
+CREATE TABLE IF NOT EXISTS person_entry_category (
+    person_entry_id BIGINT NOT NULL,
+    category VARCHAR(32) NOT NULL,
+    PRIMARY KEY (person_entry_id, category),
+    FOREIGN KEY (person_entry_id) REFERENCES person_entry (id)
+);
+CREATE INDEX IF NOT EXISTS idx_person_entry_category ON person_entry_category (category, person_entry_id);
+
+INSERT INTO person_entry_category SELECT id, 'PATIENTS_PORTAL' FROM person_entry WHERE categories LIKE '%Patients portal%';
+INSERT INTO person_entry_category SELECT id, 'DOCTORS_PORTAL' FROM person_entry WHERE categories LIKE '%Doctors portal%';
+INSERT INTO person_entry_category SELECT id, 'REGISTRATION' FROM person_entry WHERE categories LIKE '%Registration%';
+INSERT INTO person_entry_category SELECT id, 'VIRTUAL_VISIT' FROM person_entry WHERE categories LIKE '%Virtual visit%';
+INSERT INTO person_entry_category SELECT id, 'OPEN_KM' FROM person_entry WHERE categories LIKE '%Open KM%';
+INSERT INTO person_entry_category SELECT id, 'MICROSOFT_SHAREPOINT' FROM person_entry WHERE categories LIKE '%Microsoft SharePoint%';
+
+ALTER TABLE person_entry DROP COLUMN categories;
@@ -0,0 +1,13 @@
+-- Upgrades a PersonEntry database created before ids came from person_entry_seq.
+-- Before: INTEGER ids from the shared hibernate_sequence, one sequence call per insert.
+-- After:  BIGINT ids from person_entry_seq, reserved in blocks of feedback.id.allocation-size (50).
+-- Run it once against the old database before starting the new version of the application.
+-- Existing ids are kept; the new sequence starts right after the largest one.
+
+ALTER TABLE person_entry ALTER COLUMN id BIGINT;
+
+-- INCREMENT BY has to match spring.jpa.properties.feedback.id.allocation-size.
+CREATE SEQUENCE IF NOT EXISTS person_entry_seq START WITH 1 INCREMENT BY 50;
+ALTER SEQUENCE person_entry_seq RESTART WITH (SELECT COALESCE(MAX(id), 0) + 1 FROM person_entry);
+
+DROP SEQUENCE IF EXISTS hibernate_sequence;
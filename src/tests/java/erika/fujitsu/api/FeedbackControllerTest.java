@@ -0,0 +1,128 @@
+package erika.fujitsu.api;
+
+import erika.fujitsu.backend.entity.PersonEntryRules;
+import erika.fujitsu.backend.repository.PersonRepository;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"spring.jpa.show-sql=false", "feedback.api.max-batch-size=3"})
+@AutoConfigureMockMvc
+public class FeedbackControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PersonRepository personRepository;
+
+    @Test
+    public void testOneEntryIsStoredAndItsSummaryReturned() throws Exception {
+        long count = personRepository.count();
+        MvcResult result = mockMvc.perform(post("/api/feedback").contentType(MediaType.APPLICATION_JSON)
+                .content(json("Jane Roe", "jane.roe@fujitsu.ee", "OPEN_KM", "Sent by the booking service")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").isNumber())
+                .andExpect(jsonPath("$.categories[0]").value("OPEN_KM"));
+        Assert.assertEquals(count + 1, personRepository.count());
+
+        // The same feedback again.
+        result = mockMvc.perform(post("/api/feedback").contentType(MediaType.APPLICATION_JSON)
+                .content(json("Jane Roe", "jane.roe@fujitsu.ee", "OPEN_KM", "Sent by the booking service")))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isConflict());
+        Assert.assertEquals(count + 1, personRepository.count());
+    }
+
+    @Test
+    public void testInvalidEntriesAreRefusedWithTheRulesOfTheForm() throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/feedback").contentType(MediaType.APPLICATION_JSON)
+                .content(json("Jane", "not an address", "OPEN_KM", "Text")))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errors", hasItem(PersonEntryRules.NAME_NOT_FULL)))
+                .andExpect(jsonPath("$.errors", hasItem(PersonEntryRules.EMAIL_INVALID)));
+
+        mockMvc.perform(post("/api/feedback").contentType(MediaType.APPLICATION_JSON)
+                .content(json("Jane Roe", "jane.roe@fujitsu.ee", "NO_SUCH_CATEGORY", "Text")))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errors[0]").isString());
+    }
+
+    @Test
+    public void testABatchIsStoredAndItsRejectionsReported() throws Exception {
+        long count = personRepository.count();
+        String ndjson = json("Mary Major", "mary@fujitsu.ee", "REGISTRATION", "First of the batch") + "\n"
+                + json("Mary", "mary@fujitsu.ee", "REGISTRATION", "Invalid name") + "\n"
+                + json("Mary Major", "mary@fujitsu.ee", "REGISTRATION", "First of the batch") + "\n";
+        MvcResult result = mockMvc.perform(post("/api/feedback/batch")
+                .contentType(FeedbackController.APPLICATION_NDJSON_VALUE).content(ndjson))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.rejected").value(2))
+                .andExpect(jsonPath("$.rejections[0]", startsWith("2: ")))
+                .andExpect(jsonPath("$.rejections[1]", startsWith("3: ")));
+        Assert.assertEquals(count + 1, personRepository.count());
+
+        String array = "[" + json("Ron Roe", "ron@fujitsu.ee", "VIRTUAL_VISIT", "First of the array") + ","
+                + json("Ron Roe", "ron@fujitsu.ee", "VIRTUAL_VISIT", "Second of the array") + "]";
+        result = mockMvc.perform(post("/api/feedback/batch").contentType(MediaType.APPLICATION_JSON).content(array))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.rejected").value(0));
+        Assert.assertEquals(count + 3, personRepository.count());
+    }
+
+    @Test
+    public void testABatchOverTheLimitIsRefused() throws Exception {
+        long count = personRepository.count();
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 4; i++) {
+            ndjson.append(json("Max Mustermann", "max@fujitsu.ee", "DOCTORS_PORTAL", "Entry " + i)).append('\n');
+        }
+        MvcResult result = mockMvc.perform(post("/api/feedback/batch")
+                .contentType(FeedbackController.APPLICATION_NDJSON_VALUE).content(ndjson.toString()))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isPayloadTooLarge());
+
+        result = mockMvc.perform(post("/api/feedback/batch").contentType(FeedbackController.APPLICATION_NDJSON_VALUE)
+                .content(json("Max Mustermann", "max@fujitsu.ee", "DOCTORS_PORTAL", "Entry") + "\n{\"name\":"))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errors[0]", startsWith("2: ")));
+        Assert.assertEquals(count, personRepository.count());
+    }
+
+    private static String json(String name, String email, String category, String text) {
+        return String.format("{\"name\":\"%s\",\"email\":\"%s\",\"categories\":[\"%s\"],\"text\":\"%s\"}",
+                name, email, category, text);
+    }
+}
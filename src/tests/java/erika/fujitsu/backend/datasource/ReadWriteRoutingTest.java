@@ -0,0 +1,114 @@
+package erika.fujitsu.backend.datasource;
+
+import erika.fujitsu.backend.entity.Category;
+import erika.fujitsu.backend.entity.PersonEntry;
+import erika.fujitsu.backend.service.FeedbackRejectedException;
+import erika.fujitsu.backend.service.PersonService;
+import org.flywaydb.core.Flyway;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.EnumSet;
+
+/**
+ * Two in-memory H2 databases stand in for the primary and the replica. They are not replicated, so every row
+ * shows which of them a query went to.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReadWriteRoutingTest.PRIMARY_URL,
+        "feedback.datasource.replica.url=" + ReadWriteRoutingTest.REPLICA_URL,
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.cache.type=none"})
+public class ReadWriteRoutingTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1";
+
+    // Plain connections to the same two in-memory databases, past the routing.
+    private final JdbcTemplate primaryJdbc = new JdbcTemplate(new DriverManagerDataSource(PRIMARY_URL, "sa", ""));
+    private final JdbcTemplate replicaJdbc = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    @Autowired
+    private PersonService personService;
+
+    /**
+     * The replica gets its schema the way a production database does, before the application starts.
+     */
+    @BeforeClass
+    public static void createReplicaSchema() {
+        Flyway.configure().dataSource(REPLICA_URL, "sa", "").load().migrate();
+    }
+
+    @Before
+    public void setup() {
+        replicaJdbc.update("DELETE FROM person_entry_category");
+        replicaJdbc.update("DELETE FROM person_entry");
+        for (long id = 1; id <= 3; id++) {
+            replicaJdbc.update("INSERT INTO person_entry (id, name, email, text, created_at) VALUES (?, ?, ?, ?, ?)",
+                    id, "Replica Person", "replica" + id + "@fujitsu.ee", "Feedback from the replica",
+                    Timestamp.from(Instant.now()));
+            replicaJdbc.update("INSERT INTO person_entry_category (person_entry_id, category) VALUES (?, ?)",
+                    id, Category.OPEN_KM.name());
+        }
+    }
+
+    @Test
+    public void testReadsGoToTheReplica() {
+        Assert.assertEquals(3, personService.count());
+        Assert.assertEquals(3, personService.countByCategory(Category.OPEN_KM));
+        Assert.assertEquals("Replica Person", personService.fetch(0, 10, null).get(0).getName());
+        Assert.assertEquals(3, personService.fetchSummaries(0, 10, null).size());
+        Assert.assertEquals(3, personService.countSearch("replica", null));
+    }
+
+    @Test
+    public void testWritesGoToThePrimary() {
+        long before = primaryJdbc.queryForObject("SELECT COUNT(*) FROM person_entry", Long.class);
+
+        PersonEntry entry = new PersonEntry();
+        entry.setName("Primary Person");
+        entry.setEmail("primary@fujitsu.ee");
+        entry.setCategories(EnumSet.of(Category.REGISTRATION));
+        entry.setText("Feedback for the primary");
+        personService.save(entry);
+
+        Assert.assertEquals(before + 1, (long) primaryJdbc.queryForObject("SELECT COUNT(*) FROM person_entry",
+                Long.class));
+        Assert.assertEquals(3, personService.count());
+        Assert.assertEquals(0, personService.countByCategory(Category.REGISTRATION));
+    }
+
+    @Test
+    public void testDuplicatesAreCheckedOnThePrimary() {
+        PersonEntry entry = new PersonEntry();
+        entry.setName("Primary Person");
+        entry.setEmail("twice@fujitsu.ee");
+        entry.setCategories(EnumSet.of(Category.REGISTRATION));
+        entry.setText("Feedback sent twice");
+        personService.save(entry);
+
+        // Not on the replica, which has not caught up.
+        PersonEntry again = new PersonEntry();
+        again.setName(entry.getName());
+        again.setEmail(entry.getEmail());
+        again.setCategories(entry.getCategories());
+        again.setText(entry.getText());
+        try {
+            personService.save(again);
+            Assert.fail("The duplicate was saved");
+        } catch (FeedbackRejectedException rejected) {
+            Assert.assertEquals(FeedbackRejectedException.Reason.DUPLICATE, rejected.getReason());
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package erika.fujitsu.backend.repository;
+
+import erika.fujitsu.backend.entity.Category;
+import erika.fujitsu.backend.entity.PersonEntry;
+import erika.fujitsu.backend.service.PersonService;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"spring.jpa.show-sql=false", "feedback.rate-limit.burst=100",
+        "feedback.rate-limit.per-minute=6000"})
+public class FeedbackRollupsTest {
+
+    private static final String HOURLY = "SELECT hour, category, entries FROM feedback_hourly_rollup "
+            + "WHERE entries > 0 ORDER BY hour, category";
+    private static final String HOURLY_COUNTED = "SELECT DATE_TRUNC('HOUR', e.created_at) AS hour, c.category, "
+            + "COUNT(*) AS entries FROM person_entry e JOIN person_entry_category c ON c.person_entry_id = e.id "
+            + "WHERE e.deleted = FALSE GROUP BY DATE_TRUNC('HOUR', e.created_at), c.category "
+            + "ORDER BY hour, c.category";
+    private static final String SUBMITTERS = "SELECT email, entries FROM feedback_submitter_rollup WHERE entries > 0 "
+            + "ORDER BY email";
+    private static final String SUBMITTERS_COUNTED = "SELECT LOWER(TRIM(email)) AS email, COUNT(*) AS entries "
+            + "FROM person_entry WHERE deleted = FALSE GROUP BY LOWER(TRIM(email)) ORDER BY email";
+
+    @Autowired
+    private PersonService personService;
+
+    @Autowired
+    private FeedbackRollups rollups;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void testEveryWriteKeepsTheRollupsEqualToACountOfTheEntries() throws Exception {
+        PersonEntry saved = entry("Jane Roe", "Jane.Roe@fujitsu.ee ", "Saved", Category.OPEN_KM);
+        personService.save(saved);
+        assertRollupsMatchEntries();
+
+        // Another category and another sender; the time of creation cannot be changed.
+        saved.setCategories(EnumSet.of(Category.REGISTRATION, Category.VIRTUAL_VISIT));
+        saved.setEmail("john.roe@fujitsu.ee");
+        saved.setCreatedAt(saved.getCreatedAt().minus(1, ChronoUnit.HOURS));
+        personService.save(saved);
+        assertRollupsMatchEntries();
+
+        personService.submit(entry("Mary Major", "mary@fujitsu.ee", "Queued", Category.OPEN_KM))
+                .get(10, TimeUnit.SECONDS);
+        personService.submitAll(Arrays.asList(
+                entry("Mary Major", "MARY@fujitsu.ee", "First of a batch", Category.DOCTORS_PORTAL),
+                entry("Mary Major", "mary@fujitsu.ee", "Second of a batch", Category.DOCTORS_PORTAL)));
+        assertRollupsMatchEntries();
+
+        personService.delete(saved);
+        assertRollupsMatchEntries();
+        // Deleted already: nothing more to take off.
+        personService.delete(saved);
+        assertRollupsMatchEntries();
+
+        // The same text of the same sender is stored only once.
+        List<Long> batch = jdbcTemplate.queryForList("SELECT id FROM person_entry WHERE LOWER(email) = "
+                + "'mary@fujitsu.ee' AND text IN ('Queued', 'First of a batch', 'Second of a batch')", Long.class);
+        Assert.assertEquals(3, personService.deleteAll(batch));
+        assertRollupsMatchEntries();
+        Assert.assertEquals(0, personService.deleteAll(batch));
+        personService.purgeDeleted();
+        assertRollupsMatchEntries();
+
+        List<Map<String, Object>> hourly = jdbcTemplate.queryForList(HOURLY);
+        rollups.rebuild();
+        Assert.assertEquals(hourly, jdbcTemplate.queryForList(HOURLY));
+    }
+
+    @Test
+    public void testDashboardCountsIncludeEveryHourDayAndCategory() {
+        Map<LocalDateTime, Map<Category, Long>> perHour = personService.countPerHourAndCategory(24);
+        Map<LocalDate, Map<Category, Long>> perDay = personService.countPerDayAndCategory(30);
+        Assert.assertEquals(24, perHour.size());
+        Assert.assertEquals(30, perDay.size());
+        perHour.values().forEach(counts -> Assert.assertEquals(Category.values().length, counts.size()));
+        LocalDateTime currentHour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        long inCurrentHour = perHour.get(currentHour).get(Category.MICROSOFT_SHAREPOINT);
+        long today = perDay.get(LocalDate.now()).get(Category.MICROSOFT_SHAREPOINT);
+
+        personService.save(entry("Max Mustermann", "max@fujitsu.ee", "One", Category.MICROSOFT_SHAREPOINT));
+        personService.save(entry("Max Mustermann", "max@fujitsu.ee", "Two", Category.MICROSOFT_SHAREPOINT));
+        personService.save(entry("Max Mustermann", "max@fujitsu.ee", "Three", Category.MICROSOFT_SHAREPOINT));
+        personService.save(entry("Max Mustermann", "max@fujitsu.ee", "Four", Category.MICROSOFT_SHAREPOINT));
+
+        // Saving cleared the cached counts.
+        Assert.assertEquals(inCurrentHour + 4, (long) personService.countPerHourAndCategory(24)
+                .get(currentHour).get(Category.MICROSOFT_SHAREPOINT));
+        Assert.assertEquals(today + 4, (long) personService.countPerDayAndCategory(30)
+                .get(LocalDate.now()).get(Category.MICROSOFT_SHAREPOINT));
+        Map.Entry<String, Long> top = personService.topSubmitters(1).entrySet().iterator().next();
+        Assert.assertEquals("max@fujitsu.ee", top.getKey());
+        Assert.assertEquals(4L, (long) top.getValue());
+    }
+
+    @Test
+    public void testConcurrentFirstEntriesOfARowAreBothCounted() throws Exception {
+        // An hour of its own, so that both writes are the first of their rows.
+        PersonEntry first = entry("Race One", "race@fujitsu.ee", "First", Category.REGISTRATION);
+        first.setCreatedAt(Instant.parse("2001-02-03T04:05:06Z"));
+        PersonEntry second = entry("Race Two", "race@fujitsu.ee", "Second", Category.REGISTRATION);
+        second.setCreatedAt(first.getCreatedAt());
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        CountDownLatch counted = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> firstWrite = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                rollups.add(Collections.singletonList(first));
+                counted.countDown();
+                try {
+                    commit.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException interrupted) {
+                    throw new IllegalStateException(interrupted);
+                }
+            }));
+            Assert.assertTrue(counted.await(10, TimeUnit.SECONDS));
+            AtomicReference<Thread> secondThread = new AtomicReference<>();
+            Future<?> secondWrite = executor.submit(() -> {
+                secondThread.set(Thread.currentThread());
+                transactionTemplate.executeWithoutResult(status -> rollups.add(Collections.singletonList(second)));
+            });
+            // Let the second write run into the rows the first one has not committed yet.
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+            while (!secondWrite.isDone() && System.nanoTime() < deadline && (secondThread.get() == null
+                    || secondThread.get().getState() == Thread.State.RUNNABLE)) {
+                Thread.yield();
+            }
+            commit.countDown();
+            firstWrite.get(10, TimeUnit.SECONDS);
+            secondWrite.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals(2L, (long) jdbcTemplate.queryForObject("SELECT entries FROM feedback_hourly_rollup "
+                + "WHERE hour = ? AND category = ?", Long.class,
+                Timestamp.valueOf(Timestamp.from(first.getCreatedAt()).toLocalDateTime().truncatedTo(ChronoUnit.HOURS)),
+                Category.REGISTRATION.name()));
+        Assert.assertEquals(2L, (long) jdbcTemplate.queryForObject(
+                "SELECT entries FROM feedback_submitter_rollup WHERE email = 'race@fujitsu.ee'", Long.class));
+        // The entries were never stored.
+        transactionTemplate.executeWithoutResult(status -> rollups.remove(Arrays.asList(first, second)));
+        assertRollupsMatchEntries();
+    }
+
+    private void assertRollupsMatchEntries() {
+        Assert.assertEquals(jdbcTemplate.queryForList(HOURLY_COUNTED), jdbcTemplate.queryForList(HOURLY));
+        Assert.assertEquals(jdbcTemplate.queryForList(SUBMITTERS_COUNTED), jdbcTemplate.queryForList(SUBMITTERS));
+    }
+
+    private static PersonEntry entry(String name, String email, String text, Category... categories) {
+        PersonEntry entry = new PersonEntry();
+        entry.setName(name);
+        entry.setEmail(email);
+        entry.setCategories(EnumSet.of(categories[0], categories));
+        entry.setText(text);
+        return entry;
+    }
+}
@@ -0,0 +1,168 @@
+package erika.fujitsu.backend.repository;
+
+import erika.fujitsu.backend.entity.Category;
+import erika.fujitsu.backend.entity.PersonEntry;
+import erika.fujitsu.backend.entity.PersonSummary;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@Import(FullTextIndex.class)
+public class PersonRepositoryTest {
+
+    @Autowired
+    private PersonRepository personRepository;
+
+    @Before
+    public void setup() {
+        personRepository.deleteAll();
+        // Only seven distinct names, so the id has to break the ties between pages.
+        for (int i = 0; i < 40; i++) {
+            PersonEntry entry = new PersonEntry();
+            entry.setName("Person " + (i % 7));
+            entry.setEmail("person" + i + "@fujitsu.ee");
+            // Every entry is about Open KM, every third one also about the Doctors portal.
+            entry.setCategories(i % 3 == 0 ? EnumSet.of(Category.OPEN_KM, Category.DOCTORS_PORTAL)
+                    : EnumSet.of(Category.OPEN_KM));
+            entry.setText(i % 4 == 0 ? "The login page is slow" : "Feedback " + i);
+            personRepository.save(entry);
+        }
+    }
+
+    @Test
+    public void testKeysetPagesMatchOffsetPages() {
+        for (PersonSortKey sortKey : PersonSortKey.values()) {
+            for (Sort.Direction direction : Sort.Direction.values()) {
+                Sort sort = Sort.by(direction, sortKey.getProperty()).and(Sort.by(direction, "id"));
+                List<PersonEntry> expected = personRepository.findAll(sort);
+
+                List<PersonEntry> actual = new ArrayList<>();
+                List<PersonEntry> page = personRepository.findPageAfter(null, sortKey, direction, 6);
+                while (!page.isEmpty()) {
+                    actual.addAll(page);
+                    page = personRepository.findPageAfter(page.get(page.size() - 1), sortKey, direction, 6);
+                }
+
+                Assert.assertEquals(sortKey + " " + direction, expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testCategoryFilterAndCounts() {
+        Assert.assertEquals(40, personRepository.countByCategory(Category.OPEN_KM));
+        Assert.assertEquals(14, personRepository.countByCategory(Category.DOCTORS_PORTAL));
+        Assert.assertEquals(0, personRepository.countByCategory(Category.REGISTRATION));
+        Assert.assertEquals(2, personRepository.countPerCategory().size());
+
+        List<PersonEntry> doctors = personRepository.findByCategory(Category.DOCTORS_PORTAL, PageRequest.of(0, 100));
+        Assert.assertEquals(14, doctors.size());
+        for (PersonEntry entry : doctors) {
+            Assert.assertEquals(EnumSet.of(Category.OPEN_KM, Category.DOCTORS_PORTAL), entry.getCategories());
+        }
+    }
+
+    @Test
+    public void testCountPerDay() {
+        personRepository.flush();
+        List<Object[]> today = personRepository.countPerDaySince(Instant.now().minus(1, ChronoUnit.DAYS));
+        long total = 0;
+        for (Object[] row : today) {
+            total += ((Number) row[1]).longValue();
+        }
+        Assert.assertEquals(40, total);
+        Assert.assertTrue(personRepository.countPerDaySince(Instant.now().plus(1, ChronoUnit.MINUTES)).isEmpty());
+    }
+
+    @Test
+    public void testTimeRanges() {
+        Instant now = Instant.now();
+        PersonEntry old = new PersonEntry();
+        old.setName("Old Writer");
+        old.setEmail("old@fujitsu.ee");
+        old.setCategories(EnumSet.of(Category.REGISTRATION));
+        old.setText("Written long ago");
+        old.setCreatedAt(now.minus(400, ChronoUnit.DAYS));
+        personRepository.saveAndFlush(old);
+
+        Instant yearAgo = now.minus(365, ChronoUnit.DAYS);
+        Assert.assertEquals(1, personRepository.countCreatedBetween(Instant.EPOCH, yearAgo));
+        Assert.assertEquals(40, personRepository.countCreatedBetween(yearAgo, now.plus(1, ChronoUnit.MINUTES)));
+        List<PersonSummary> oldSummaries = personRepository.findSummariesCreatedBetween(Instant.EPOCH, yearAgo,
+                PageRequest.of(0, 10));
+        Assert.assertEquals(1, oldSummaries.size());
+        Assert.assertEquals(old.getId(), oldSummaries.get(0).getId());
+        Assert.assertEquals(5, personRepository.findSummariesCreatedBetween(yearAgo, now.plus(1, ChronoUnit.MINUTES),
+                PageRequest.of(1, 5)).size());
+
+        List<PersonEntry> oldest = personRepository.findOldestCreatedBefore(now.plus(1, ChronoUnit.MINUTES),
+                PageRequest.of(0, 3));
+        Assert.assertEquals(3, oldest.size());
+        Assert.assertEquals(old.getId(), oldest.get(0).getId());
+        Assert.assertTrue(personRepository.findOldestCreatedBefore(Instant.EPOCH, PageRequest.of(0, 3)).isEmpty());
+    }
+
+    @Test
+    public void testFullTextSearch() {
+        Sort byName = Sort.by("name").and(Sort.by("id"));
+        List<PersonEntry> slowLogin = personRepository.search("SLOW login", PageRequest.of(0, 100, byName));
+        Assert.assertEquals(10, slowLogin.size());
+        Assert.assertEquals(10, personRepository.countSearch("slow login"));
+        for (int i = 1; i < slowLogin.size(); i++) {
+            Assert.assertTrue(slowLogin.get(i - 1).getName().compareTo(slowLogin.get(i).getName()) <= 0);
+        }
+
+        // Every twelfth entry is both slow and about the Doctors portal.
+        Assert.assertEquals(4, personRepository.countSearchInCategory("slow", Category.DOCTORS_PORTAL));
+        Assert.assertEquals(4, personRepository.searchInCategory("slow", Category.DOCTORS_PORTAL,
+                PageRequest.of(0, 100)).size());
+        Assert.assertEquals(1, personRepository.search("person7", PageRequest.of(0, 100)).size());
+
+        personRepository.delete(slowLogin.get(0));
+        personRepository.flush();
+        Assert.assertEquals(9, personRepository.countSearch("slow login"));
+    }
+
+    @Test
+    public void testSummariesOnlyLoadTheTextPreview() {
+        PersonEntry longEntry = new PersonEntry();
+        longEntry.setName("Long Writer");
+        longEntry.setEmail("long@fujitsu.ee");
+        longEntry.setCategories(EnumSet.of(Category.REGISTRATION));
+        longEntry.setText(String.join("", Collections.nCopies(1000, "x")));
+        personRepository.saveAndFlush(longEntry);
+
+        List<PersonSummary> summaries = personRepository.findSummariesByCategory(Category.REGISTRATION,
+                PageRequest.of(0, 10));
+        Assert.assertEquals(1, summaries.size());
+        PersonSummary summary = summaries.get(0);
+        Assert.assertEquals(longEntry.getId(), summary.getId());
+        Assert.assertTrue(summary.isTextTruncated());
+        Assert.assertEquals(PersonSummary.PREVIEW_LENGTH + 1, summary.getTextPreview().length());
+        Assert.assertEquals(longEntry.getText(), personRepository.findTextById(longEntry.getId()).orElse(null));
+
+        List<PersonSummary> page = personRepository.findSummariesBy(PageRequest.of(0, 5,
+                Sort.by(Sort.Direction.DESC, "name", "id")));
+        Assert.assertEquals(5, page.size());
+        Assert.assertFalse(page.get(0).isTextTruncated());
+        List<Object[]> categories = personRepository.findCategoriesByIdIn(Collections.singleton(page.get(0).getId()));
+        Assert.assertFalse(categories.isEmpty());
+        Assert.assertEquals(8, personRepository.searchIds("slow", PageRequest.of(0, 8)).size());
+    }
+}
@@ -0,0 +1,35 @@
+package erika.fujitsu.backend.service;
+
+import erika.fujitsu.backend.entity.Category;
+import erika.fujitsu.backend.entity.ContentHash;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.EnumSet;
+
+public class BloomFilterTest {
+
+    @Test
+    public void testAddedHashesAreNeverMissed() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add(hash(i));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            Assert.assertTrue(filter.mightContain(hash(i)));
+        }
+
+        int falsePositives = 0;
+        for (int i = 10_000; i < 20_000; i++) {
+            if (filter.mightContain(hash(i))) {
+                falsePositives++;
+            }
+        }
+        // 1 % expected, with plenty of room for chance.
+        Assert.assertTrue("False positives: " + falsePositives, falsePositives < 200);
+    }
+
+    private static String hash(int i) {
+        return ContentHash.of("person" + i + "@fujitsu.ee", EnumSet.of(Category.OPEN_KM), "Feedback " + i);
+    }
+}
@@ -0,0 +1,119 @@
+package erika.fujitsu.backend.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class BulkheadTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private Bulkhead bulkhead;
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        bulkhead.shutdown();
+    }
+
+    @Test
+    public void testCallsOverTheQueueAreRejectedAtOnce() throws Exception {
+        bulkhead = new Bulkhead("reads", 1, 1, Duration.ofSeconds(10), false, meterRegistry);
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<String> running = bulkhead.submit(() -> {
+            started.countDown();
+            await(release);
+            return "first";
+        });
+        started.await();
+        CompletableFuture<String> waiting = bulkhead.submit(() -> "second");
+        Assert.assertEquals(1, gauge(Bulkhead.ACTIVE_GAUGE), 0);
+        Assert.assertEquals(1, gauge(Bulkhead.QUEUED_GAUGE), 0);
+
+        CompletableFuture<String> rejected = bulkhead.submit(() -> "third");
+        Assert.assertTrue(rejected.isCompletedExceptionally());
+        try {
+            bulkhead.call(() -> "fourth");
+            Assert.fail("A full bulkhead should not take more calls");
+        } catch (RejectedExecutionException expected) {
+            // Refused without waiting.
+        }
+        Assert.assertEquals(2, meterRegistry.get(Bulkhead.REJECTED_COUNTER).counter().count(), 0);
+
+        release.countDown();
+        Assert.assertEquals("first", running.join());
+        Assert.assertEquals("second", waiting.join());
+        Assert.assertEquals("fifth", bulkhead.call(() -> "fifth"));
+        Assert.assertEquals(0, gauge(Bulkhead.QUEUED_GAUGE), 0);
+    }
+
+    @Test
+    public void testTheCallerStopsWaitingAfterTheTimeout() {
+        // The calls keep their places until they have really ended, so the third one needs a place of its own.
+        bulkhead = new Bulkhead("reads", 1, 2, Duration.ofMillis(100), false, meterRegistry);
+        AtomicBoolean waitingRan = new AtomicBoolean();
+        CompletableFuture<String> running = bulkhead.submit(() -> {
+            await(release);
+            return "first";
+        });
+        CompletableFuture<String> waiting = bulkhead.submit(() -> {
+            waitingRan.set(true);
+            return "second";
+        });
+        for (CompletableFuture<String> call : Arrays.asList(running, waiting)) {
+            try {
+                call.join();
+                Assert.fail("The call should have timed out");
+            } catch (CompletionException timedOut) {
+                Assert.assertTrue(timedOut.getCause() instanceof TimeoutException);
+            }
+        }
+
+        // A call that timed out in the queue is dropped; the calls after it run as usual.
+        release.countDown();
+        Assert.assertEquals("third", bulkhead.call(() -> "third"));
+        Assert.assertFalse(waitingRan.get());
+        Assert.assertEquals(2, meterRegistry.get(Bulkhead.TIMEOUT_COUNTER).counter().count(), 0);
+
+        // The exceptions of the call itself reach the caller as they are.
+        try {
+            bulkhead.call(() -> {
+                throw new IllegalStateException("broken");
+            });
+            Assert.fail("The exception of the call should be thrown");
+        } catch (IllegalStateException expected) {
+            Assert.assertEquals("broken", expected.getMessage());
+        }
+    }
+
+    @Test
+    public void testVirtualThreadsAreUsedWhereTheJdkHasThem() {
+        // Before Java 21 the bulkhead runs on platform threads instead.
+        bulkhead = new Bulkhead("writes", 2, 10, Duration.ofSeconds(10), true, meterRegistry);
+        Assert.assertEquals(Runtime.version().feature() >= 21,
+                bulkhead.call(() -> Thread.currentThread().getName().isEmpty()));
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).tag("bulkhead", "reads").gauge().value();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
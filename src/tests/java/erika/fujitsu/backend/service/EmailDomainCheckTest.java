@@ -0,0 +1,55 @@
+package erika.fujitsu.backend.service;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class EmailDomainCheckTest {
+
+    @Test
+    public void testOnlyTheAllowedDomainsAndTheirSubdomainsAreAccepted() {
+        EmailDomainCheck check = new EmailDomainCheck(" Fujitsu.ee, fujitsu.com ,", false, 100, Duration.ofHours(1));
+        Assert.assertTrue(check.isEnabled());
+        Assert.assertTrue(check.isAllowed("jane@fujitsu.ee"));
+        Assert.assertTrue(check.isAllowed("jane@FUJITSU.COM"));
+        Assert.assertTrue(check.isAllowed("jane@support.fujitsu.ee"));
+        Assert.assertFalse(check.isAllowed("jane@notfujitsu.ee"));
+        Assert.assertFalse(check.isAllowed("jane@fujitsu.ee.example.com"));
+        Assert.assertFalse(check.isAllowed("not an address"));
+
+        EmailDomainCheck everyone = new EmailDomainCheck("", false, 100, Duration.ofHours(1));
+        Assert.assertFalse(everyone.isEnabled());
+        Assert.assertTrue(everyone.isAllowed("jane@example.com"));
+    }
+
+    @Test
+    public void testTheAnswersOfTheDnsAreCached() {
+        Map<String, Boolean> dns = new ConcurrentHashMap<>();
+        dns.put("fujitsu.ee", true);
+        dns.put("fujitsu.eee", false);
+        AtomicInteger lookups = new AtomicInteger();
+        EmailDomainCheck check = new EmailDomainCheck("", true, 100, Duration.ofHours(1)) {
+            @Override
+            Boolean hasMailServer(String domain) {
+                lookups.incrementAndGet();
+                // No answer for the domains it does not know, like a DNS that timed out.
+                return dns.get(domain);
+            }
+        };
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(check.isAllowed("jane@fujitsu.ee"));
+            Assert.assertFalse(check.isAllowed("jane@Fujitsu.eee"));
+        }
+        Assert.assertEquals(2, lookups.get());
+
+        // Without an answer the domain is accepted, and asked for again next time.
+        Assert.assertTrue(check.isAllowed("jane@unreachable.ee"));
+        Assert.assertTrue(check.isAllowed("jane@unreachable.ee"));
+        Assert.assertEquals(4, lookups.get());
+    }
+}
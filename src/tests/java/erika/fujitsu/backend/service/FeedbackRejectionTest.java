@@ -0,0 +1,160 @@
+package erika.fujitsu.backend.service;
+
+import erika.fujitsu.backend.entity.Category;
+import erika.fujitsu.backend.entity.ContentHash;
+import erika.fujitsu.backend.entity.PersonEntry;
+import erika.fujitsu.backend.repository.PersonRepository;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"spring.jpa.show-sql=false", "feedback.rate-limit.burst=2",
+        "feedback.email.allowed-domains=fujitsu.ee"})
+public class FeedbackRejectionTest {
+
+    @Autowired
+    private PersonService personService;
+
+    @Autowired
+    private PersonRepository personRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void testTheSameFeedbackIsOnlySavedOnce() {
+        personService.save(entry("Jane Doe", "jane@fujitsu.ee", "The portal is great"));
+        long count = personRepository.count();
+
+        // Someone else's name on the same feedback, the email written differently.
+        FeedbackRejectedException rejected = saveAndFail(entry("John Doe", " Jane@Fujitsu.EE", "The portal is great "));
+        Assert.assertEquals(FeedbackRejectedException.Reason.DUPLICATE, rejected.getReason());
+        Assert.assertEquals(count, personRepository.count());
+
+        // A second entry of the same address would be over the rate limit of this test.
+        personService.save(entry("Jane Doe", "jane.doe@fujitsu.ee", "The portal is great"));
+        Assert.assertEquals(count + 1, personRepository.count());
+    }
+
+    @Test
+    public void testTheUniqueIndexCatchesWhatTheFilterDoesNotKnow() {
+        // Stored behind the back of the service, so only the database knows it.
+        PersonEntry stored = entry("Mary Major", "mary@fujitsu.ee", "Stored by someone else");
+        long id = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR person_entry_seq", Long.class);
+        jdbcTemplate.update(
+                "INSERT INTO person_entry (id, name, email, text, created_at, content_hash) VALUES (?, ?, ?, ?, ?, ?)",
+                id, stored.getName(), stored.getEmail(), stored.getText(), Timestamp.from(Instant.now()),
+                ContentHash.of(stored));
+
+        FeedbackRejectedException rejected = saveAndFail(entry("Mary Major", "mary@fujitsu.ee",
+                "Stored by someone else"));
+        Assert.assertEquals(FeedbackRejectedException.Reason.DUPLICATE, rejected.getReason());
+        Assert.assertTrue(rejected.getCause() instanceof DataIntegrityViolationException);
+    }
+
+    @Test
+    public void testFastSendersAreRefused() throws Exception {
+        // The burst is 2 per email address and per session.
+        Assert.assertNotNull(submit(entry("Rita Roe", "rita@fujitsu.ee", "First"), "session-1"));
+        Assert.assertNotNull(submit(entry("Rita Roe", "rita@fujitsu.ee", "Second"), "session-1"));
+        assertRefused(entry("Rita Roe", "rita@fujitsu.ee", "Third"), "session-2",
+                FeedbackRejectedException.Reason.RATE_LIMITED);
+        assertRefused(entry("Rita Roe", "rita.roe@fujitsu.ee", "Fourth"), "session-1",
+                FeedbackRejectedException.Reason.RATE_LIMITED);
+
+        Assert.assertNotNull(submit(entry("Ron Roe", "ron@fujitsu.ee", "Hello"), "session-3"));
+        assertRefused(entry("Ron Roe", "ron@fujitsu.ee", "Hello"), "session-3",
+                FeedbackRejectedException.Reason.DUPLICATE);
+    }
+
+    @Test
+    public void testSubmissionsAreCheckedInTheBackground() throws Exception {
+        assertRefused(entry("Amy", "amy@fujitsu.ee", "No last name"), "session-4",
+                FeedbackRejectedException.Reason.INVALID);
+        assertRefused(entry("Amy Adams", "amy@example.com", "Not from a work address"), "session-4",
+                FeedbackRejectedException.Reason.EMAIL_DOMAIN);
+        Assert.assertNotNull(submit(entry("Amy Adams", "amy@Support.Fujitsu.EE", "From a subdomain"), "session-5"));
+
+        Assert.assertTrue(personService.isEmailDomainAllowed("amy@fujitsu.ee").get(5, TimeUnit.SECONDS));
+        Assert.assertFalse(personService.isEmailDomainAllowed("amy@notfujitsu.ee").get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testADeletedEntryIsNotSavedAgain() {
+        PersonEntry entry = entry("Lisa Lane", "lisa@fujitsu.ee", "Deleted while open in another tab");
+        personService.save(entry);
+        long count = personRepository.count();
+        List<PersonEvent> deletions = new CopyOnWriteArrayList<>();
+        Runnable unsubscribe = personService.subscribe(event -> {
+            if (event.getType() == PersonEvent.Type.DELETED) {
+                deletions.add(event);
+            }
+        });
+        try {
+            personService.delete(entry);
+            // Deleted already, by someone else.
+            personService.delete(entry);
+            Assert.assertEquals(1, deletions.size());
+
+            entry.setText("Changed while open in another tab");
+            try {
+                personService.save(entry);
+                Assert.fail("The deleted entry should not be saved");
+            } catch (FeedbackRejectedException expected) {
+                Assert.assertEquals(FeedbackRejectedException.Reason.DELETED, expected.getReason());
+            }
+            Assert.assertEquals(count - 1, personRepository.count());
+        } finally {
+            unsubscribe.run();
+        }
+    }
+
+    private FeedbackRejectedException saveAndFail(PersonEntry entry) {
+        try {
+            personService.save(entry);
+        } catch (FeedbackRejectedException expected) {
+            Assert.assertNull("A refused entry stays new", entry.getId());
+            return expected;
+        }
+        throw new AssertionError("The entry should be refused");
+    }
+
+    private PersonEntry submit(PersonEntry entry, String sessionKey) throws Exception {
+        return personService.submit(entry, sessionKey).get(5, TimeUnit.SECONDS);
+    }
+
+    private void assertRefused(PersonEntry entry, String sessionKey, FeedbackRejectedException.Reason reason)
+            throws Exception {
+        try {
+            submit(entry, sessionKey);
+            Assert.fail("The entry should be refused");
+        } catch (ExecutionException expected) {
+            Assert.assertTrue(expected.getCause() instanceof FeedbackRejectedException);
+            Assert.assertEquals(reason, ((FeedbackRejectedException) expected.getCause()).getReason());
+            Assert.assertNull("A refused entry stays new", entry.getId());
+        }
+    }
+
+    private static PersonEntry entry(String name, String email, String text) {
+        PersonEntry entry = new PersonEntry();
+        entry.setName(name);
+        entry.setEmail(email);
+        entry.setCategories(EnumSet.of(Category.REGISTRATION));
+        entry.setText(text);
+        return entry;
+    }
+}
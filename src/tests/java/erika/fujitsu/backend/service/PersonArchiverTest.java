@@ -0,0 +1,110 @@
+package erika.fujitsu.backend.service;
+
+import erika.fujitsu.backend.entity.Category;
+import erika.fujitsu.backend.entity.PersonEntry;
+import erika.fujitsu.backend.repository.FeedbackRollups;
+import erika.fujitsu.backend.repository.PersonRepository;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@Import({PersonArchiver.class, PersonImporter.class, PersonExporter.class, DuplicateDetector.class,
+        PersonEventBus.class, FeedbackRollups.class})
+// Small chunks, so an archive is made of several transactions and gzip members.
+@TestPropertySource(properties = {"feedback.retention.chunk-size=2",
+        "feedback.retention.archive-dir=target/archive-test"})
+public class PersonArchiverTest {
+
+    @Autowired
+    private PersonRepository personRepository;
+
+    @Autowired
+    private PersonArchiver archiver;
+
+    @Autowired
+    private PersonImporter importer;
+
+    @Value("${feedback.retention.archive-dir}")
+    private Path archiveDir;
+
+    @Before
+    public void setup() throws Exception {
+        FileSystemUtils.deleteRecursively(archiveDir);
+        personRepository.deleteAll();
+        Instant now = Instant.now();
+        for (int i = 0; i < 8; i++) {
+            PersonEntry entry = new PersonEntry();
+            entry.setName("Person " + i);
+            entry.setEmail("person" + i + "@fujitsu.ee");
+            entry.setCategories(EnumSet.of(Category.PATIENTS_PORTAL));
+            entry.setText("Feedback " + i);
+            // Five entries from last year, three from today.
+            entry.setCreatedAt(i < 5 ? now.minus(400 - i, ChronoUnit.DAYS) : now);
+            personRepository.save(entry);
+        }
+        personRepository.flush();
+    }
+
+    @Test
+    public void testOldEntriesAreMovedIntoAnArchiveThatCanBeImported() throws Exception {
+        Instant yearAgo = Instant.now().minus(365, ChronoUnit.DAYS);
+        Assert.assertEquals(5, archiver.archive(yearAgo));
+        Assert.assertEquals(3, personRepository.count());
+        Assert.assertEquals(0, personRepository.countCreatedBetween(Instant.EPOCH, yearAgo));
+        Assert.assertEquals(0, archiver.archive(yearAgo));
+
+        List<Path> files;
+        try (Stream<Path> list = Files.list(archiveDir)) {
+            files = list.collect(Collectors.toList());
+        }
+        Assert.assertEquals(1, files.size());
+        Path file = files.get(0);
+        Assert.assertTrue(file.toString(), file.toString().endsWith(".ndjson.gz"));
+        // Three chunks, three gzip members, read as one stream; oldest first.
+        List<String> lines;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            lines = reader.lines().collect(Collectors.toList());
+        }
+        Assert.assertEquals(5, lines.size());
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(lines.get(i), lines.get(i).contains("\"Feedback " + i + "\""));
+        }
+
+        ImportReport report = importer.importFile(file, ExportFormat.fromFileName(file.toString()));
+        Assert.assertEquals(report.getRejections().toString(), 5, report.getImported());
+        Assert.assertEquals(8, personRepository.count());
+        Assert.assertEquals(5, personRepository.countCreatedBetween(Instant.EPOCH, yearAgo));
+    }
+
+    @Test
+    public void testArchiveDirectoryIsOnlyCreatedWhenThereIsSomethingToArchive() throws Exception {
+        Assert.assertEquals(0, archiver.archive(Instant.EPOCH));
+        Assert.assertFalse(Files.exists(archiveDir));
+        Assert.assertEquals(8, personRepository.count());
+    }
+}
@@ -0,0 +1,77 @@
+package erika.fujitsu.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import erika.fujitsu.backend.entity.Category;
+import erika.fujitsu.backend.entity.PersonEntry;
+import erika.fujitsu.backend.repository.PersonRepository;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@Import(PersonExporter.class)
+// Clear the persistence context every other entry, so the export has to survive it.
+@TestPropertySource(properties = "feedback.export.clear-interval=2")
+public class PersonExporterTest {
+
+    @Autowired
+    private PersonRepository personRepository;
+
+    @Autowired
+    private PersonExporter exporter;
+
+    @Before
+    public void setup() {
+        personRepository.deleteAll();
+        for (int i = 0; i < 5; i++) {
+            PersonEntry entry = new PersonEntry();
+            entry.setName("Person " + i);
+            entry.setEmail("person" + i + "@fujitsu.ee");
+            entry.setCategories(EnumSet.of(Category.OPEN_KM, Category.REGISTRATION));
+            entry.setText(i == 0 ? "Slow, \"very\" slow\nlogin" : "Feedback " + i);
+            personRepository.save(entry);
+        }
+        personRepository.flush();
+    }
+
+    @Test
+    public void testCsvExport() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter.export(ExportFormat.CSV, out);
+        String[] lines = out.toString(StandardCharsets.UTF_8.name()).split("\r\n");
+
+        Assert.assertEquals(6, lines.length);
+        Assert.assertEquals("id,name,email,categories,text,created_at", lines[0]);
+        Assert.assertTrue(lines[1], lines[1].contains(
+                ",Person 0,person0@fujitsu.ee,\"Registration, Open KM\",\"Slow, \"\"very\"\" slow\nlogin\","));
+        Assert.assertTrue(lines[5], lines[5].contains(",Person 4,person4@fujitsu.ee,"));
+    }
+
+    @Test
+    public void testNdjsonExport() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter.export(ExportFormat.NDJSON, out);
+        String[] lines = out.toString(StandardCharsets.UTF_8.name()).split("\n");
+
+        Assert.assertEquals(5, lines.length);
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode first = mapper.readTree(lines[0]);
+        Assert.assertEquals("Person 0", first.get("name").asText());
+        Assert.assertEquals("Slow, \"very\" slow\nlogin", first.get("text").asText());
+        Assert.assertEquals(2, first.get("categories").size());
+        Assert.assertFalse(first.get("createdAt").isNull());
+        Assert.assertEquals("Person 4", mapper.readTree(lines[4]).get("name").asText());
+    }
+}
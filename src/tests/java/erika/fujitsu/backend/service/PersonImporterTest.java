@@ -0,0 +1,118 @@
+package erika.fujitsu.backend.service;
+
+import erika.fujitsu.backend.entity.Category;
+import erika.fujitsu.backend.entity.PersonEntry;
+import erika.fujitsu.backend.entity.PersonEntryRules;
+import erika.fujitsu.backend.repository.FeedbackRollups;
+import erika.fujitsu.backend.repository.PersonRepository;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@Import({PersonImporter.class, PersonExporter.class, DuplicateDetector.class, PersonEventBus.class,
+        FeedbackRollups.class})
+// Small chunks, so the records are spread over several parser threads and transactions.
+@TestPropertySource(properties = {"feedback.import.chunk-size=3", "feedback.import.parallelism=2"})
+public class PersonImporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Autowired
+    private PersonRepository personRepository;
+
+    @Autowired
+    private PersonImporter importer;
+
+    @Autowired
+    private PersonExporter exporter;
+
+    @Test
+    public void testExportedFilesCanBeImported() throws Exception {
+        personRepository.deleteAll();
+        for (int i = 0; i < 10; i++) {
+            PersonEntry entry = new PersonEntry();
+            entry.setName("Person " + i);
+            entry.setEmail("person" + i + "@fujitsu.ee");
+            entry.setCategories(EnumSet.of(Category.VIRTUAL_VISIT, Category.OPEN_KM));
+            entry.setText(i == 0 ? "Slow, \"very\" slow\nlogin" : "Feedback " + i);
+            personRepository.save(entry);
+        }
+        personRepository.flush();
+
+        for (ExportFormat format : ExportFormat.values()) {
+            Path file = folder.newFile("feedback." + format.getFileExtension()).toPath();
+            try (OutputStream out = Files.newOutputStream(file)) {
+                exporter.export(format, out);
+            }
+            // The file holds everything stored: it restores an empty table, and only repeats a full one.
+            long before = personRepository.count();
+            personRepository.deleteAll();
+            personRepository.flush();
+            ImportReport report = importer.importFile(file, format);
+            Assert.assertEquals(format + ": " + report.getRejections(), before, report.getImported());
+            Assert.assertEquals(0, report.getRejected());
+            Assert.assertEquals(before, personRepository.count());
+
+            ImportReport again = importer.importFile(file, format);
+            Assert.assertEquals(0, again.getImported());
+            Assert.assertEquals(before, again.getRejected());
+            Assert.assertEquals("1: " + FeedbackRejectedException.Reason.DUPLICATE.getMessage(),
+                    again.getRejections().get(0));
+            Assert.assertEquals(before, personRepository.count());
+        }
+
+        List<PersonEntry> slow = personRepository.findAll().stream()
+                .filter(entry -> entry.getName().equals("Person 0")).collect(Collectors.toList());
+        Assert.assertEquals(1, slow.size());
+        Assert.assertEquals("Slow, \"very\" slow\nlogin", slow.get(0).getText());
+        Assert.assertEquals(EnumSet.of(Category.VIRTUAL_VISIT, Category.OPEN_KM), slow.get(0).getCategories());
+        Assert.assertNotNull(slow.get(0).getContentHash());
+    }
+
+    @Test
+    public void testInvalidRecordsAreRejected() throws Exception {
+        Path file = folder.newFile("feedback.csv").toPath();
+        Files.write(file, Arrays.asList(
+                "text,email,name,categories",
+                "Great portal,jane@fujitsu.ee,Jane Doe,Patients portal",
+                "Great portal,not an email,Jane Doe,Patients portal",
+                "Great portal,jane@fujitsu.ee,Jane,Patients portal",
+                "Great portal,jane@fujitsu.ee,Jane Doe,No such portal",
+                ",jane@fujitsu.ee,Jane Doe,\"Registration, Open KM\"",
+                "Great portal ,Jane@Fujitsu.ee,Jane Roe,Patients portal"), StandardCharsets.UTF_8);
+
+        long before = personRepository.count();
+        ImportReport report = importer.importFile(file, ExportFormat.CSV);
+
+        Assert.assertEquals(1, report.getImported());
+        Assert.assertEquals(5, report.getRejected());
+        Assert.assertEquals(before + 1, personRepository.count());
+        Assert.assertEquals("2: " + PersonEntryRules.EMAIL_INVALID, report.getRejections().get(0));
+        Assert.assertEquals("3: " + PersonEntryRules.NAME_NOT_FULL + " " + PersonEntryRules.NAME_TOO_SHORT,
+                report.getRejections().get(1));
+        Assert.assertEquals("4: Unknown category: No such portal", report.getRejections().get(2));
+        Assert.assertEquals("5: " + PersonEntryRules.TEXT_MISSING, report.getRejections().get(3));
+        // The same feedback as the first record, only written differently.
+        Assert.assertEquals("6: " + FeedbackRejectedException.Reason.DUPLICATE.getMessage(),
+                report.getRejections().get(4));
+    }
+}
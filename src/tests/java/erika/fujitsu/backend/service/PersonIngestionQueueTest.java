@@ -0,0 +1,160 @@
+package erika.fujitsu.backend.service;
+
+import erika.fujitsu.backend.entity.Category;
+import erika.fujitsu.backend.entity.PersonEntry;
+import erika.fujitsu.backend.repository.FeedbackRollups;
+import erika.fujitsu.backend.repository.PersonRepository;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class PersonIngestionQueueTest {
+
+    private final PersonRepository personRepository = Mockito.mock(PersonRepository.class);
+    private final PersonEventBus eventBus = new PersonEventBus();
+    private PersonIngestionQueue queue;
+
+    private void startQueue(int capacity, int batchSize) {
+        queue = new PersonIngestionQueue(personRepository, Mockito.mock(FeedbackRollups.class), eventBus,
+                Mockito.mock(PlatformTransactionManager.class),
+                capacity, batchSize, 50, 10);
+        queue.start();
+    }
+
+    @After
+    public void stopQueue() throws InterruptedException {
+        queue.stop();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEntriesAreWrittenInBatches() throws Exception {
+        List<PersonEvent> events = new CopyOnWriteArrayList<>();
+        eventBus.subscribe(events::add);
+        // Like a merge, the repository writes copies of the entries.
+        AtomicLong ids = new AtomicLong();
+        Mockito.when(personRepository.saveAll(Mockito.anyList())).thenAnswer(invocation -> {
+            List<PersonEntry> copies = new ArrayList<>();
+            for (PersonEntry entry : (List<PersonEntry>) invocation.getArgument(0)) {
+                PersonEntry copy = entry("Copy of " + entry.getName());
+                copy.setId(ids.incrementAndGet());
+                copies.add(copy);
+            }
+            return copies;
+        });
+        startQueue(1000, 10);
+        List<CompletableFuture<PersonEntry>> futures = new ArrayList<>();
+        for (int i = 0; i < 95; i++) {
+            futures.add(queue.submit(entry("Person " + i)));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            Assert.assertEquals("Copy of Person " + i, futures.get(i).get(5, TimeUnit.SECONDS).getName());
+        }
+
+        ArgumentCaptor<List<PersonEntry>> batches = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(personRepository, Mockito.atLeast(10)).saveAll(batches.capture());
+        int written = 0;
+        for (List<PersonEntry> batch : batches.getAllValues()) {
+            Assert.assertTrue(batch.size() <= 10);
+            written += batch.size();
+        }
+        Assert.assertEquals(95, written);
+        Assert.assertEquals(95, events.size());
+        Assert.assertEquals(PersonEvent.Type.CREATED, events.get(0).getType());
+        Assert.assertNotNull(events.get(0).getEntry().getId());
+    }
+
+    @Test
+    public void testFullQueueRejectsEntries() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(personRepository.saveAll(Mockito.anyList())).thenAnswer(invocation -> {
+            blocked.countDown();
+            release.await();
+            return invocation.getArgument(0);
+        });
+        startQueue(2, 1);
+
+        CompletableFuture<PersonEntry> writing = queue.submit(entry("Person 1"));
+        Assert.assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        queue.submit(entry("Person 2"));
+        queue.submit(entry("Person 3"));
+        CompletableFuture<PersonEntry> rejected = queue.submit(entry("Person 4"));
+
+        try {
+            rejected.get(5, TimeUnit.SECONDS);
+            Assert.fail("The queue should be full");
+        } catch (ExecutionException expected) {
+            Assert.assertTrue(expected.getCause() instanceof RejectedExecutionException);
+        }
+        release.countDown();
+        Assert.assertNotNull(writing.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testBrokenEntryDoesNotFailItsBatch() throws Exception {
+        PersonEntry broken = entry("Broken Person");
+        Mockito.when(personRepository.saveAll(Mockito.anyList())).thenThrow(new IllegalStateException("batch"));
+        Mockito.when(personRepository.save(Mockito.any(PersonEntry.class))).thenAnswer(invocation -> {
+            if (invocation.getArgument(0) == broken) {
+                // The insert took an id before it failed.
+                broken.setId(42L);
+                throw new IllegalStateException("entry");
+            }
+            return invocation.getArgument(0);
+        });
+        startQueue(100, 100);
+
+        CompletableFuture<PersonEntry> first = queue.submit(entry("Person 1"));
+        CompletableFuture<PersonEntry> failed = queue.submit(broken);
+        CompletableFuture<PersonEntry> last = queue.submit(entry("Person 2"));
+
+        Assert.assertNotNull(first.get(5, TimeUnit.SECONDS));
+        Assert.assertNotNull(last.get(5, TimeUnit.SECONDS));
+        try {
+            failed.get(5, TimeUnit.SECONDS);
+            Assert.fail("The broken entry should not be saved");
+        } catch (ExecutionException expected) {
+            Assert.assertEquals("entry", expected.getCause().getMessage());
+        }
+        Assert.assertNull(broken.getId());
+    }
+
+    @Test
+    public void testStoppedQueueRejectsEntries() throws Exception {
+        startQueue(100, 10);
+        queue.stop();
+
+        try {
+            queue.submit(entry("Person 1")).get(5, TimeUnit.SECONDS);
+            Assert.fail("A stopped queue should not take entries");
+        } catch (ExecutionException expected) {
+            Assert.assertTrue(expected.getCause() instanceof RejectedExecutionException);
+            Assert.assertTrue(expected.getCause().getMessage().contains("shutting down"));
+        }
+        Assert.assertEquals(0, queue.size());
+    }
+
+    private static PersonEntry entry(String name) {
+        PersonEntry entry = new PersonEntry();
+        entry.setName(name);
+        entry.setEmail("test@fujitsu.ee");
+        entry.setCategories(EnumSet.of(Category.OPEN_KM));
+        entry.setText("Feedback text");
+        return entry;
+    }
+}
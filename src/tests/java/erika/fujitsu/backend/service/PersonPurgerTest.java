@@ -0,0 +1,89 @@
+package erika.fujitsu.backend.service;
+
+import erika.fujitsu.backend.entity.Category;
+import erika.fujitsu.backend.entity.ContentHash;
+import erika.fujitsu.backend.entity.PersonEntry;
+import erika.fujitsu.backend.repository.OffsetBasedPageRequest;
+import erika.fujitsu.backend.repository.PersonRepository;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@Import(PersonPurger.class)
+// Small batches, so a purge is made of several transactions.
+@TestPropertySource(properties = "feedback.purge.batch-size=2")
+public class PersonPurgerTest {
+
+    @Autowired
+    private PersonRepository personRepository;
+
+    @Autowired
+    private PersonPurger purger;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<PersonEntry> entries = new ArrayList<>();
+
+    @Before
+    public void setup() {
+        personRepository.deleteAll();
+        for (int i = 0; i < 6; i++) {
+            PersonEntry entry = new PersonEntry();
+            entry.setName("Person " + i);
+            entry.setEmail("person" + i + "@fujitsu.ee");
+            entry.setCategories(EnumSet.of(i % 2 == 0 ? Category.OPEN_KM : Category.REGISTRATION));
+            entry.setText("Feedback " + i);
+            entry.setContentHash(ContentHash.of(entry));
+            entries.add(personRepository.save(entry));
+        }
+        personRepository.flush();
+    }
+
+    @Test
+    public void testDeletedEntriesAreHiddenAtOnceAndPurgedInBatches() {
+        List<Long> deleted = Arrays.asList(entries.get(0).getId(), entries.get(2).getId(), entries.get(3).getId());
+        Assert.assertEquals(3, personRepository.markDeleted(deleted));
+        // Deleted already.
+        Assert.assertEquals(0, personRepository.markDeleted(deleted));
+
+        Assert.assertEquals(3, personRepository.count());
+        Assert.assertEquals(1, personRepository.countByCategory(Category.OPEN_KM));
+        Assert.assertEquals(2, personRepository.countByCategory(Category.REGISTRATION));
+        Assert.assertEquals(3, personRepository.findAll().size());
+        List<Long> shown = personRepository.findAllBy(new OffsetBasedPageRequest(0, 10, Sort.by("id"))).stream()
+                .map(PersonEntry::getId)
+                .collect(Collectors.toList());
+        Assert.assertEquals(Arrays.asList(entries.get(1).getId(), entries.get(4).getId(), entries.get(5).getId()),
+                shown);
+        Assert.assertFalse(personRepository.findById(entries.get(0).getId()).isPresent());
+        // The content of a deleted entry still counts as stored until it is purged.
+        Assert.assertTrue(personRepository.existsByContentHash(entries.get(0).getContentHash()));
+
+        Assert.assertEquals(3, purger.purge());
+        Assert.assertEquals(Long.valueOf(3), jdbcTemplate.queryForObject("SELECT COUNT(*) FROM person_entry",
+                Long.class));
+        Assert.assertEquals(Long.valueOf(0), jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM person_entry_category WHERE person_entry_id IN (?, ?, ?)", Long.class,
+                deleted.toArray()));
+        Assert.assertFalse(personRepository.existsByContentHash(entries.get(0).getContentHash()));
+        Assert.assertEquals(3, personRepository.count());
+        Assert.assertEquals(0, purger.purge());
+    }
+}
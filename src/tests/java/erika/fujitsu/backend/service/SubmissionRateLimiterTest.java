@@ -0,0 +1,96 @@
+package erika.fujitsu.backend.service;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SubmissionRateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testBurstThenSteadyRate() {
+        // 3 at once, then one every 10 seconds.
+        SubmissionRateLimiter limiter = new SubmissionRateLimiter(3, 6, 100);
+        long now = 42 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(limiter.tryAcquire("email:jane@fujitsu.ee", now));
+        }
+        Assert.assertFalse(limiter.tryAcquire("email:jane@fujitsu.ee", now));
+        Assert.assertTrue("Other senders have their own limit", limiter.tryAcquire("email:john@fujitsu.ee", now));
+
+        Assert.assertFalse(limiter.tryAcquire("email:jane@fujitsu.ee", now + 9 * SECOND));
+        Assert.assertTrue(limiter.tryAcquire("email:jane@fujitsu.ee", now + 10 * SECOND));
+        Assert.assertFalse(limiter.tryAcquire("email:jane@fujitsu.ee", now + 10 * SECOND));
+
+        // A quiet sender gets the whole burst back, but not more.
+        long later = now + 10 * 60 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(limiter.tryAcquire("email:jane@fujitsu.ee", later));
+        }
+        Assert.assertFalse(limiter.tryAcquire("email:jane@fujitsu.ee", later));
+    }
+
+    @Test
+    public void testQuietSendersAreForgotten() {
+        AtomicLong clock = new AtomicLong();
+        SubmissionRateLimiter limiter = new SubmissionRateLimiter(1, 6, 100, clock::get);
+        Assert.assertTrue(limiter.tryAcquire("a", clock.get()));
+        Assert.assertTrue(limiter.tryAcquire("b", clock.get()));
+        Assert.assertFalse(limiter.tryAcquire("a", clock.get()));
+        Assert.assertEquals(2, limiter.size());
+
+        // Once the buckets are full again, the senders are gone.
+        clock.addAndGet(10 * SECOND);
+        Assert.assertTrue(limiter.tryAcquire("c", clock.get()));
+        Assert.assertEquals(1, limiter.size());
+    }
+
+    @Test
+    public void testNewSendersAreTrackedWhenTheLimiterIsFull() {
+        SubmissionRateLimiter limiter = new SubmissionRateLimiter(1, 6, 10);
+        long now = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertTrue("A new sender is never refused", limiter.tryAcquire("email:" + i + "@example.com", now));
+        }
+        Assert.assertTrue(limiter.size() <= 10);
+    }
+
+    @Test
+    public void testNoTokenIsHandedOutTwiceUnderContention() throws Exception {
+        int burst = 1000;
+        SubmissionRateLimiter limiter = new SubmissionRateLimiter(burst, 1, 10);
+        long now = System.nanoTime();
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> acquired = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            acquired.add(executor.submit(() -> {
+                start.await();
+                int count = 0;
+                for (int i = 0; i < burst; i++) {
+                    if (limiter.tryAcquire("session:shared", now)) {
+                        count++;
+                    }
+                }
+                return count;
+            }));
+        }
+        start.countDown();
+        int total = 0;
+        for (Future<Integer> count : acquired) {
+            total += count.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        Assert.assertEquals(burst, total);
+    }
+}
@@ -0,0 +1,83 @@
+package erika.fujitsu.frontend.feedbackform;
+
+import com.vaadin.flow.component.UI;
+import erika.fujitsu.backend.service.BackendExecutor;
+import erika.fujitsu.backend.service.PersonService;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+/**
+ * Measures the server-side state one FeedbackFormView adds to a session, as the size of the view when it is
+ * serialized the way a session is. The PersonService, the BackendExecutor and the MeterRegistry are singletons
+ * shared by all sessions, so they are left out of the measurement.
+ */
+public class FeedbackFormViewMemoryTest {
+
+    private final PersonService personService = Mockito.mock(PersonService.class);
+    private final BackendExecutor backendExecutor = Mockito.mock(BackendExecutor.class);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // The export links register their resources with the current UI, which Vaadin only references weakly.
+    private final UI ui = new UI();
+
+    @Before
+    public void setUp() {
+        UI.setCurrent(ui);
+    }
+
+    @After
+    public void tearDown() {
+        UI.setCurrent(null);
+    }
+
+    @Test
+    public void testLazyEditorReducesSessionSize() throws IOException {
+        int eager = serializedSize(new FeedbackFormView(personService, backendExecutor, meterRegistry, false));
+        int lazy = serializedSize(new FeedbackFormView(personService, backendExecutor, meterRegistry, true));
+        Assert.assertTrue(String.format("The lazy editor mode should keep less state per session: "
+                + "%d bytes with the form, %d bytes with a lazy form", eager, lazy), lazy < eager);
+    }
+
+    @Test
+    public void testOpeningTheEditorCreatesTheForm() throws IOException {
+        FeedbackFormView view = new FeedbackFormView(personService, backendExecutor, meterRegistry, true);
+        int closed = serializedSize(view);
+        view.setPersonEntry(null);
+        Assert.assertTrue("Showing an entry should create the form", serializedSize(view) > closed);
+    }
+
+    private int serializedSize(FeedbackFormView view) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new SharedBeansOutputStream(bytes)) {
+            out.writeObject(view);
+        }
+        return bytes.size();
+    }
+
+    /**
+     * Writes a placeholder instead of the beans and the meters that every session shares.
+     */
+    private final class SharedBeansOutputStream extends ObjectOutputStream {
+
+        private SharedBeansOutputStream(OutputStream out) throws IOException {
+            super(out);
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) {
+            return obj == personService || obj == backendExecutor || obj == meterRegistry || obj instanceof Meter
+                    ? "shared" : obj;
+        }
+    }
+}